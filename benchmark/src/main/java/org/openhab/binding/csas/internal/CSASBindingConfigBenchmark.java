@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.StringItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the item binding configurations and the update of the account index.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CSASBindingConfigBenchmark {
+
+    private static final String CONTEXT = "csas.items";
+    private static final String ACCOUNT = "AD65B3F25E1145C0FD9A22A9E1477DC05F9A44B5";
+    private static final String[] SUFFIXES = {"", ".party", ".info", ".description", ".vs"};
+
+    @Param({"10", "100", "1000"})
+    private int items;
+
+    private Item[] itemList;
+    private String[] configs;
+
+    @Setup
+    public void setup() {
+        itemList = new Item[items + 2];
+        configs = new String[items + 2];
+        itemList[0] = new StringItem("CSASBalance");
+        configs[0] = ACCOUNT;
+        itemList[1] = new NumberItem("CSASDisposable");
+        configs[1] = ACCOUNT + "#disposable";
+        for (int i = 0; i < items; i++) {
+            itemList[i + 2] = new StringItem("CSASTransaction" + i);
+            configs[i + 2] = ACCOUNT + "#" + (i / SUFFIXES.length + 1) + SUFFIXES[i % SUFFIXES.length];
+        }
+    }
+
+    @Benchmark
+    public CSASGenericBindingProvider processBindingConfigurations() throws Exception {
+        CSASGenericBindingProvider provider = new CSASGenericBindingProvider();
+        for (int i = 0; i < itemList.length; i++) {
+            provider.processBindingConfiguration(CONTEXT, itemList[i], configs[i]);
+        }
+        return provider;
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the recorded responses of the fixtures directory and replicates their
+ * records to the requested size, keeping the paging fields of the recording.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASFixtures {
+
+    private CSASFixtures() {
+    }
+
+    /**
+     * @param name    name of the recorded response, e.g. "transactions"
+     * @param records number of records of the returned response
+     * @return the response JSON with the records array of the same name
+     */
+    public static String load(String name, int records) throws IOException {
+        JsonObject response = read(name);
+        JsonArray recorded = response.getAsJsonArray(name);
+        JsonArray replicated = new JsonArray();
+        for (int i = 0; i < records; i++) {
+            replicated.add(recorded.get(i % recorded.size()));
+        }
+        response.add(name, replicated);
+        return response.toString();
+    }
+
+    private static JsonObject read(String name) throws IOException {
+        try (InputStream in = CSASFixtures.class.getResourceAsStream("/fixtures/" + name + ".json")) {
+            if (in == null)
+                throw new IOException("Missing fixture " + name);
+
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            return new JsonParser().parse(reader).getAsJsonObject();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import com.google.gson.Gson;
+import org.openhab.binding.csas.internal.model.CSASAmount;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and display formatting of the amounts.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CSASFormattingBenchmark {
+
+    @Param({"-1899", "4215000", "-123456789012"})
+    private String value;
+
+    private final CSASBinding binding = new CSASBinding();
+
+    private CSASAmount amount;
+    private CSASMoney money;
+
+    @Setup
+    public void setup() throws Exception {
+        amount = new Gson().fromJson("{\"value\":\"" + value + "\",\"precision\":2,\"currency\":\"CZK\"}", CSASAmount.class);
+        money = CSASMoney.valueOf(amount);
+    }
+
+    @Benchmark
+    public CSASMoney parseAmount() {
+        return CSASMoney.valueOf(amount);
+    }
+
+    @Benchmark
+    public String formatAmount() {
+        return money.toString();
+    }
+
+    @Benchmark
+    public String formatMoney() {
+        return binding.formatMoney(value);
+    }
+}
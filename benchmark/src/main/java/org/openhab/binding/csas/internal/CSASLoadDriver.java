@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.openhab.core.events.EventPublisher;
+import org.openhab.core.items.GenericItem;
+import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
+import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.types.State;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs refresh cycles of {@link CSASBinding} against {@link CSASStubServer} with N accounts
+ * of M bound items each and reports the cycle times and the API calls per endpoint.
+ * <p>
+ * Usage: CSASLoadDriver [accounts] [items per account] [cycles] [threads] [latency ms] [error rate]
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASLoadDriver {
+
+    private static final String CONTEXT = "load.items";
+    private static final String[] SUFFIXES = {"", ".party", ".info", ".description", ".vs"};
+
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int itemsPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int cycles = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        long latency = args.length > 4 ? Long.parseLong(args[4]) : 50;
+        double errorRate = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+
+        new CSASLoadDriver().run(accounts, itemsPerAccount, cycles, threads, latency, errorRate);
+    }
+
+    public void run(int accounts, int itemsPerAccount, int cycles, int threads, long latency, double errorRate) throws Exception {
+        CSASStubServer server = new CSASStubServer(0);
+        server.setVolume(accounts, 100, 5);
+        server.setLatency(latency / 2, latency * 3 / 2);
+        server.setErrorRate(errorRate);
+        server.start();
+
+        CSASBinding binding = new CSASBinding();
+        try {
+            binding.setItemRegistry(createItemRegistry());
+            binding.setEventPublisher(createEventPublisher());
+            binding.addBindingProvider(createProvider(accounts, itemsPerAccount));
+
+            Map<String, Object> configuration = new HashMap<>();
+            configuration.put("clientId", "load");
+            configuration.put("clientSecret", "load");
+            configuration.put("refreshToken", "load");
+            configuration.put("webAPIKey", "load-" + System.nanoTime());
+            configuration.put("apiUrl", server.getApiUrl());
+            configuration.put("tokenUrl", server.getTokenUrl());
+            configuration.put("threads", Integer.toString(threads));
+            binding.activate(null, configuration);
+
+            System.out.printf("%d account(s), %d item(s) each, %d thread(s), latency %d ms, error rate %.2f%n",
+                    accounts, itemsPerAccount, threads, latency, errorRate);
+            long total = 0;
+            for (int cycle = 1; cycle <= cycles; cycle++) {
+                server.resetCounters();
+                updates.set(0);
+
+                long start = System.nanoTime();
+                binding.refresh().get();
+                long millis = (System.nanoTime() - start) / 1000000;
+                total += millis;
+
+                System.out.printf("cycle %d: %d ms, %d update(s), %d error(s), %d not modified, calls %s%n",
+                        cycle, millis, updates.get(), server.getErrors(), server.getNotModified(), server.getCalls());
+            }
+            System.out.printf("average cycle: %d ms%n", total / Math.max(1, cycles));
+        } finally {
+            binding.deactivate(0);
+            server.stop();
+        }
+    }
+
+    private CSASGenericBindingProvider createProvider(int accounts, int itemsPerAccount) throws Exception {
+        CSASGenericBindingProvider provider = new CSASGenericBindingProvider();
+        for (int account = 0; account < accounts; account++) {
+            String accountId = CSASStubServer.getAccountId(account);
+            for (int i = 0; i < itemsPerAccount; i++) {
+                String config;
+                GenericItem item;
+                if (i == 0) {
+                    config = accountId;
+                    item = new StringItem("Balance_" + account);
+                } else if (i == 1) {
+                    config = accountId + "#disposable";
+                    item = new NumberItem("Disposable_" + account);
+                } else {
+                    int position = i - 2;
+                    config = accountId + "#" + (position / SUFFIXES.length + 1) + SUFFIXES[position % SUFFIXES.length];
+                    item = new StringItem("Transaction_" + account + "_" + position);
+                }
+                items.put(item.getName(), item);
+                provider.processBindingConfiguration(CONTEXT, item, config);
+            }
+        }
+        //the loyalty program is revalidated by every cycle
+        GenericItem loyalty = new NumberItem("Loyalty");
+        items.put(loyalty.getName(), loyalty);
+        provider.processBindingConfiguration(CONTEXT, loyalty, "ibod");
+        return provider;
+    }
+
+    private ItemRegistry createItemRegistry() {
+        return (ItemRegistry) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ItemRegistry.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class)
+                        return method.invoke(this, args);
+                    if (method.getName().equals("getItem")) {
+                        Item item = items.get((String) args[0]);
+                        if (item == null)
+                            throw new ItemNotFoundException((String) args[0]);
+                        return item;
+                    }
+                    if (method.getName().equals("getItems"))
+                        return items.values();
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private EventPublisher createEventPublisher() {
+        return (EventPublisher) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{EventPublisher.class},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class)
+                        return method.invoke(this, args);
+                    if (method.getName().equals("postUpdate")) {
+                        updates.incrementAndGet();
+                        Item item = items.get((String) args[0]);
+                        if (item instanceof GenericItem)
+                            ((GenericItem) item).setState((State) args[1]);
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.openhab.binding.csas.internal.model.CSASReservation;
+import org.openhab.binding.csas.internal.model.CSASTransaction;
+import org.openhab.binding.csas.internal.model.response.CSASReservationsResponse;
+import org.openhab.binding.csas.internal.model.response.CSASTransactionsResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the recorded transaction and reservation responses and their conversion
+ * to {@link CSASSimpleTransaction}s. The responses are streamed record by record as by
+ * the binding, the whole document deserialization is kept as the baseline.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CSASParsingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int records;
+
+    private final Gson gson = new Gson();
+    private final CSASBinding binding = new CSASBinding();
+
+    private byte[] transactionsJson;
+    private byte[] reservationsJson;
+    private List<CSASTransaction> transactions;
+    private List<CSASReservation> reservations;
+
+    @Setup
+    public void setup() throws Exception {
+        String transactionsString = CSASFixtures.load("transactions", records);
+        String reservationsString = CSASFixtures.load("reservations", records);
+        transactionsJson = transactionsString.getBytes(StandardCharsets.UTF_8);
+        reservationsJson = reservationsString.getBytes(StandardCharsets.UTF_8);
+        transactions = gson.fromJson(transactionsString, CSASTransactionsResponse.class).getTransactions();
+        reservations = gson.fromJson(reservationsString, CSASReservationsResponse.class).getReservations();
+    }
+
+    @Benchmark
+    public CSASRecordPage readTransactions() throws Exception {
+        return binding.readRecords(open(transactionsJson), "transactions", CSASTransaction.class, binding::createTransaction);
+    }
+
+    @Benchmark
+    public CSASRecordPage readReservations() throws Exception {
+        return binding.readRecords(open(reservationsJson), "reservations", CSASReservation.class, binding::createReservation);
+    }
+
+    /**
+     * Baseline: the whole response deserialized first and converted afterwards.
+     */
+    @Benchmark
+    public void deserializeTransactions(Blackhole blackhole) throws Exception {
+        CSASTransactionsResponse response = gson.fromJson(open(transactionsJson), CSASTransactionsResponse.class);
+        for (CSASTransaction transaction : response.getTransactions()) {
+            blackhole.consume(binding.createTransaction(transaction));
+        }
+    }
+
+    @Benchmark
+    public void createTransactions(Blackhole blackhole) throws Exception {
+        for (CSASTransaction transaction : transactions) {
+            blackhole.consume(binding.createTransaction(transaction));
+        }
+    }
+
+    @Benchmark
+    public void createReservations(Blackhole blackhole) throws Exception {
+        for (CSASReservation reservation : reservations) {
+            blackhole.consume(binding.createReservation(reservation));
+        }
+    }
+
+    private static JsonReader open(byte[] json) {
+        return new JsonReader(new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+    }
+}
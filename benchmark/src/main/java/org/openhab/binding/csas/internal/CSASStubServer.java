@@ -0,0 +1,391 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable stand-in of the CSAS WebAPI serving generated accounts, balances, transactions,
+ * reservations and contracts plus the token endpoint. Latency, error rate and data volume
+ * are configurable and the calls are counted per endpoint. The discovery and loyalty responses
+ * carry ETag and Last-Modified validators and are answered by 304 Not Modified when unchanged.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASStubServer {
+
+    public static final String API_PATH = "/webapi/api/v3/netbanking/";
+    public static final String TOKEN_PATH = "/widp/oauth2/token";
+
+    private final HttpServer server;
+    //The generated data are dated relative to the start of the server, so they stay the same between the cycles
+    private final long created = System.currentTimeMillis();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private volatile int accounts = 10;
+    private volatile int transactions = 50;
+    private volatile int reservations = 5;
+    private volatile long minLatency = 0;
+    private volatile long maxLatency = 0;
+    private volatile double errorRate = 0;
+    private volatile long tokenLifetime = 300;
+
+    //Calls per endpoint
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    public CSASStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext(API_PATH, this::handleApi);
+        server.createContext(TOKEN_PATH, this::handleToken);
+        server.setExecutor(executor);
+    }
+
+    public static String getAccountId(int account) {
+        return String.format("ACC%06d", account);
+    }
+
+    public static String getIban(int account) {
+        return String.format("CZ650800000000%010d", account);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getApiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + API_PATH;
+    }
+
+    public String getTokenUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + TOKEN_PATH;
+    }
+
+    /**
+     * @param accounts     number of the current accounts
+     * @param transactions number of the transactions of every account
+     * @param reservations number of the reservations of every account
+     */
+    public void setVolume(int accounts, int transactions, int reservations) {
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.reservations = reservations;
+    }
+
+    /**
+     * Every response is delayed by a random time between the given bounds in milliseconds.
+     */
+    public void setLatency(long minLatency, long maxLatency) {
+        this.minLatency = minLatency;
+        this.maxLatency = Math.max(minLatency, maxLatency);
+    }
+
+    /**
+     * @param errorRate share of the API calls answered by 503 Service Unavailable, 0 - 1
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setTokenLifetime(long seconds) {
+        this.tokenLifetime = seconds;
+    }
+
+    /**
+     * @return the number of calls per endpoint since the last reset, sorted by the endpoint
+     */
+    public Map<String, Long> getCalls() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : calls.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return the number of calls answered by 304 Not Modified since the last reset
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public void resetCounters() {
+        calls.clear();
+        errors.set(0);
+        notModified.set(0);
+    }
+
+    private void handleToken(HttpExchange exchange) throws IOException {
+        count("token");
+        drain(exchange.getRequestBody());
+        JsonObject token = new JsonObject();
+        token.addProperty("access_token", "stub-" + System.nanoTime());
+        token.addProperty("expires_in", tokenLifetime);
+        respond(exchange, 200, token);
+    }
+
+    private void handleApi(HttpExchange exchange) throws IOException {
+        URI uri = exchange.getRequestURI();
+        String[] path = uri.getPath().substring(API_PATH.length()).split("/");
+        Map<String, String> query = parseQuery(uri.getRawQuery());
+        String endpoint = getEndpoint(path);
+        count(endpoint);
+
+        delay();
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            respond(exchange, 503, new JsonObject());
+            return;
+        }
+
+        switch (endpoint) {
+            case "accounts":
+                respondConditionally(exchange, accounts());
+                break;
+            case "balance":
+                respond(exchange, 200, balance(path[2]));
+                break;
+            case "reservations":
+                respond(exchange, 200, reservations(path[2]));
+                break;
+            case "transactions":
+                respond(exchange, 200, transactions(path[3], query));
+                break;
+            case "loyalty":
+                JsonObject loyalty = new JsonObject();
+                loyalty.addProperty("pointsCount", "12345");
+                respondConditionally(exchange, loyalty);
+                break;
+            case "cards":
+            case "securitiesAccounts":
+            case "pensions":
+            case "buildings":
+            case "insurances":
+                JsonObject contracts = new JsonObject();
+                contracts.add(endpoint, new JsonArray());
+                respondConditionally(exchange, contracts);
+                break;
+            default:
+                respond(exchange, 404, new JsonObject());
+        }
+    }
+
+    private String getEndpoint(String[] path) {
+        String last = path[path.length - 1];
+        if (path.length == 2 && path[0].equals("my") && last.equals("accounts"))
+            return "accounts";
+        if (last.equals("securities"))
+            return "securitiesAccounts";
+        return last;
+    }
+
+    private JsonObject accounts() {
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < accounts; i++) {
+            JsonObject number = new JsonObject();
+            number.addProperty("number", String.format("%010d", i));
+            number.addProperty("bankCode", "0800");
+            number.addProperty("cz-iban", getIban(i));
+
+            JsonObject account = new JsonObject();
+            account.addProperty("id", getAccountId(i));
+            account.add("accountno", number);
+            list.add(account);
+        }
+        JsonObject response = new JsonObject();
+        response.add("accounts", list);
+        return response;
+    }
+
+    private JsonObject balance(String accountId) {
+        long value = Math.abs(accountId.hashCode()) % 10000000L;
+        JsonObject response = new JsonObject();
+        response.add("balance", amount(value));
+        response.add("disposable", amount(value - 150000));
+        return response;
+    }
+
+    private JsonObject reservations(String accountId) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        long now = created;
+        JsonArray list = new JsonArray();
+        for (int i = 0; i < reservations; i++) {
+            JsonObject reservation = new JsonObject();
+            reservation.addProperty("creationDate", format.format(new Date(now - i * 3600000L)));
+            reservation.add("amount", amount(-(i + 1) * 12900L));
+            reservation.addProperty("description", "Platba kartou");
+            reservation.addProperty("merchantName", "MERCHANT " + i);
+            reservation.addProperty("cz-merchantAddress", "Praha " + (i % 10 + 1));
+            list.add(reservation);
+        }
+        JsonObject response = new JsonObject();
+        response.add("reservations", list);
+        return response;
+    }
+
+    private JsonObject transactions(String iban, Map<String, String> query) {
+        int size = query.containsKey("size") ? Integer.parseInt(query.get("size")) : transactions;
+        int page = query.containsKey("page") ? Integer.parseInt(query.get("page")) : 0;
+        int pageCount = Math.max(1, (transactions + size - 1) / size);
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        long today = created;
+        JsonArray list = new JsonArray();
+        for (int i = page * size; i < Math.min(transactions, (page + 1) * size); i++) {
+            JsonObject party = new JsonObject();
+            party.addProperty("accountPartyInfo", "Party " + i);
+            party.addProperty("accountPartyDescription", iban);
+
+            JsonObject transaction = new JsonObject();
+            transaction.addProperty("bookingDate", format.format(new Date(today - (i / 3) * 86400000L)));
+            transaction.add("amount", amount((i % 2 == 0 ? -1 : 1) * (i + 1) * 10050L));
+            transaction.addProperty("description", "Transaction " + i);
+            transaction.addProperty("variableSymbol", Integer.toString(1000 + i));
+            transaction.add("accountParty", party);
+            list.add(transaction);
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("pageNumber", page);
+        response.addProperty("pageCount", pageCount);
+        response.addProperty("pageSize", size);
+        response.add("transactions", list);
+        return response;
+    }
+
+    private JsonObject amount(long value) {
+        JsonObject amount = new JsonObject();
+        amount.addProperty("value", value);
+        amount.addProperty("precision", 2);
+        amount.addProperty("currency", "CZK");
+        return amount;
+    }
+
+    private void count(String endpoint) {
+        calls.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    private void delay() {
+        long latency = minLatency;
+        if (maxLatency > minLatency)
+            latency += ThreadLocalRandom.current().nextLong(maxLatency - minLatency + 1);
+        if (latency <= 0)
+            return;
+
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> result = new TreeMap<>();
+        if (query == null)
+            return result;
+
+        for (String pair : query.split("&")) {
+            int pos = pair.indexOf('=');
+            if (pos > 0)
+                result.put(pair.substring(0, pos), pair.substring(pos + 1));
+        }
+        return result;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) >= 0) {
+            //ignore the request body
+        }
+    }
+
+    /**
+     * Sends the body with its validators or 304 Not Modified if the client holds it already.
+     * The generated data change only with the volume, so the hash of the body serves as the ETag.
+     */
+    private void respondConditionally(HttpExchange exchange, JsonObject body) throws IOException {
+        String etag = "\"" + Integer.toHexString(body.toString().hashCode()) + "\"";
+        Headers request = exchange.getRequestHeaders();
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        String ifModifiedSince = request.getFirst("If-Modified-Since");
+        boolean unchanged;
+        if (ifNoneMatch != null) {
+            unchanged = ifNoneMatch.equals(etag);
+        } else {
+            unchanged = ifModifiedSince != null && !isModifiedSince(ifModifiedSince);
+        }
+
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified", getHttpDateFormat().format(new Date(created)));
+        if (unchanged) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, 200, body);
+    }
+
+    private boolean isModifiedSince(String date) {
+        try {
+            //the HTTP dates have no milliseconds
+            return getHttpDateFormat().parse(date).getTime() < created / 1000 * 1000;
+        } catch (ParseException e) {
+            return true;
+        }
+    }
+
+    private static SimpleDateFormat getHttpDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -8,15 +8,49 @@
  */
 package org.openhab.binding.csas;
 
+import org.openhab.binding.csas.internal.CSASAccountBindings;
 import org.openhab.binding.csas.internal.CSASItemType;
 import org.openhab.core.binding.BindingProvider;
 
+import java.util.Set;
+
 /**
  * @author Ondrej Pecta
  * @since 1.9.0
  */
 public interface CSASBindingProvider extends BindingProvider {
+    /**
+     * @deprecated the accounts are resolved through {@link #getAccountBindings(String)}
+     */
+    @Deprecated
     String getItemId(String itemName);
+
     CSASItemType getItemType(String itemName);
     int getTransactionId(String itemName);
+
+    /**
+     * @return true if the item is a NumberItem getting the amount as a number
+     */
+    boolean isNumeric(String itemName);
+
+    /**
+     * @return name of the metric bound to the item or null if the item is not bound to a metric
+     */
+    String getMetric(String itemName);
+
+    /**
+     * @return window of the aggregate bound to the item, e.g. 7d, or null if the item is not an aggregate
+     */
+    String getWindow(String itemName);
+
+    /**
+     * @return ids of all accounts having at least one bound item, qualified by the identity name
+     * as <code>identity:accountId</code> unless they belong to the default identity
+     */
+    Set<String> getAccountIds();
+
+    /**
+     * @return summary of the items bound to the account or null if the account is not bound
+     */
+    CSASAccountBindings getAccountBindings(String accountKey);
 }
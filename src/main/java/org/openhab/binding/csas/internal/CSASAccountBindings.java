@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.openhab.binding.csas.CSASBindingProvider;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable summary of the items bound to one account, kept by the reverse
+ * index of the {@link CSASBindingProvider}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASAccountBindings {
+
+    private final String identity;
+    private final String accountId;
+    private final Set<String> itemNames;
+    private final Set<CSASItemType> itemTypes;
+    private final int maxTransactionId;
+
+    public CSASAccountBindings(String identity, String accountId, Set<String> itemNames, EnumSet<CSASItemType> itemTypes, int maxTransactionId) {
+        this.identity = identity;
+        this.accountId = accountId;
+        this.itemNames = Collections.unmodifiableSet(itemNames);
+        this.itemTypes = Collections.unmodifiableSet(itemTypes);
+        this.maxTransactionId = maxTransactionId;
+    }
+
+    /**
+     * @return name of the identity the account belongs to, empty for the default identity
+     */
+    public String getIdentity() {
+        return identity;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return the account id qualified by the identity name
+     */
+    public String getKey() {
+        return CSASIdentity.getAccountKey(identity, accountId);
+    }
+
+    public Set<String> getItemNames() {
+        return itemNames;
+    }
+
+    /**
+     * @return the highest bound transaction position, 0 if no transaction is bound
+     */
+    public int getMaxTransactionId() {
+        return maxTransactionId;
+    }
+
+    public boolean hasBalance() {
+        return itemTypes.contains(CSASItemType.BALANCE) || itemTypes.contains(CSASItemType.DISPOSABLE_BALANCE);
+    }
+}
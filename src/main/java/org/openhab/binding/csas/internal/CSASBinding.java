@@ -9,34 +9,45 @@
 package org.openhab.binding.csas.internal;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import org.apache.commons.lang.StringUtils;
 import org.openhab.binding.csas.CSASBindingProvider;
 import org.openhab.binding.csas.internal.model.*;
 import org.openhab.binding.csas.internal.model.response.*;
 import org.openhab.core.binding.AbstractActiveBinding;
+import org.openhab.core.binding.BindingProvider;
 import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.library.types.DecimalType;
 import org.openhab.core.library.types.StringType;
 import org.openhab.core.types.Command;
 import org.openhab.core.types.State;
+import org.openhab.core.types.UnDefType;
 import org.osgi.framework.BundleContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
-import java.io.InputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.math.BigDecimal;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.commons.lang.time.DateUtils.addDays;
+import static org.apache.commons.lang.time.DateUtils.truncate;
 
 /**
  * Implement this class if you are going create an actively polling service
@@ -64,30 +75,86 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
     private ItemRegistry itemRegistry;
 
     //Constants
-    final private String NETBANKING_V3 = "https://www.csas.cz/webapi/api/v3/netbanking/";
+    final private static int HTTP_TOO_MANY_REQUESTS = 429;
+    final private static long RATE_LIMIT_WAIT = 60000;
+    final private static long RETRY_BACKOFF = 1000;
 
-    /**
-     * the refresh interval which is used to poll values from the CSAS
-     * server (optional, defaults to 60000ms)
-     */
-    private long refreshInterval = 1800000;
-    private String clientId = "";
-    private String clientSecret = "";
-    private String refreshToken = "";
-    private String accessToken = "";
-    private String webAPIKey = "";
-    private int historyInterval = 14;
+    //Configuration used by the refresh cycles, replaced by the cycle applying a changed one
+    private volatile CSASConfiguration configuration = CSASConfiguration.getDefault();
 
     //Gson parser
     private Gson gson = new Gson();
 
-    //Account list
-    HashMap<String, String> accountList = new HashMap<>();
+    //HTTP transport
+    private final CSASUrlConnectionTransport defaultTransport = new CSASUrlConnectionTransport();
+    private volatile CSASTransport transport = defaultTransport;
+
+    //Identities by name, the default one is always present
+    private final Map<String, CSASIdentity> identities = new ConcurrentHashMap<>();
+
+    //Call and refresh cycle metrics, exposed through JMX
+    private final CSASMetrics metrics = new CSASMetrics();
+
+    //Responses shared within one refresh cycle
+    private final CSASRequestCache requestCache = new CSASRequestCache();
+
+    //Locally held transactions for the incremental synchronization
+    private final Map<String, CSASTransactionStore> transactionStores = new ConcurrentHashMap<>();
+
+    //Reconciled reservations and bookings of the accounts, used by the refresh thread only
+    private final Map<String, CSASTransactionBuffer> transactionBuffers = new ConcurrentHashMap<>();
+
+    //Rolling aggregates of the transactions of the accounts, used by the refresh thread only
+    private final Map<String, CSASSpendingAggregates> spendingAggregates = new ConcurrentHashMap<>();
+
+    //Refresh plan, compiled again when the bindings version changes
+    private volatile CSASRefreshPlan refreshPlan;
+    private final AtomicInteger bindingsVersion = new AtomicInteger();
+
+    //Rate limiter of the WebAPI key
+    private volatile CSASRateLimiter rateLimiter = CSASRateLimiter.forKey("");
 
-    //IbanList
-    HashMap<String, String> ibanList = new HashMap<>();
+    //Circuit breakers of the endpoint families
+    private final Map<CSASEndpoint, CSASCircuitBreaker> circuitBreakers = new EnumMap<>(CSASEndpoint.class);
+
+    //Fingerprints of the account data the items were mapped from in the last cycle
+    private final Map<String, Integer> accountFingerprints = new ConcurrentHashMap<>();
+
+    //Item updates published at the end of the refresh cycle
+    private final CSASUpdatePublisher updatePublisher = new CSASUpdatePublisher();
+
+    //Per account polling intervals
+    private final CSASPollingScheduler scheduler = new CSASPollingScheduler();
+
+    //Executor for parallel account fetching, null when fetching sequentially
+    private volatile ExecutorService fetchExecutor;
+
+    //Executor running the refresh cycles, the sole thread waiting for the network apart from the fetch threads
+    private volatile ExecutorService refreshExecutor;
+
+    //Cycle being run and the cycle coalescing the refreshes requested meanwhile, guarded by cycleLock
+    private final Object cycleLock = new Object();
+    private CompletableFuture<Void> runningCycle;
+    private CompletableFuture<Void> pendingCycle;
+
+    //Changed configuration, the next cycle applies it first
+    private final AtomicReference<CSASConfiguration> pendingConfiguration = new AtomicReference<>();
 
     public CSASBinding() {
+        identities.put(CSASIdentity.DEFAULT, new CSASIdentity(CSASIdentity.DEFAULT, transport, metrics.getToken()));
+        for (CSASEndpoint endpoint : CSASEndpoint.values()) {
+            circuitBreakers.put(endpoint, new CSASCircuitBreaker(endpoint.name().toLowerCase()));
+        }
+    }
+
+    /**
+     * Replaces the HTTP transport used for all CSAS calls, e.g. by one talking to a local stub server.
+     */
+    public void setTransport(CSASTransport transport) {
+        this.transport = transport;
+        for (CSASIdentity identity : identities.values()) {
+            identity.getTokenManager().setTransport(transport);
+        }
     }
 
 
@@ -103,92 +170,145 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         // the configuration is guaranteed not to be null, because the component definition has the
         // configuration-policy set to require. If set to 'optional' then the configuration may be null
 
-        readConfiguration(configuration);
+        //no cycle runs yet, the configuration is applied right away
+        pendingConfiguration.set(null);
+        applyConfiguration(CSASConfiguration.parse(configuration));
         // read further config parameters here ...
+        startRefreshExecutor();
+        metrics.register();
 
         setProperlyConfigured(true);
     }
 
-    private void refreshToken() {
-        String url = null;
-
-        try {
-            String urlParameters = "client_id=" + clientId + "&client_secret=" + clientSecret + "&redirect_uri=https://localhost/code&grant_type=refresh_token&refresh_token=" + refreshToken;
-            url = "https://www.csas.cz/widp/oauth2/token";
-
-            byte[] postData = urlParameters.getBytes(StandardCharsets.UTF_8);
-
-            URL cookieUrl = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) cookieUrl.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Length", Integer.toString(postData.length));
-            try (DataOutputStream wr = new DataOutputStream(connection.getOutputStream())) {
-                wr.write(postData);
+    private void configureIdentities(CSASConfiguration config) {
+        Map<String, Map<String, String>> namedIdentities = config.getNamedIdentities();
+        String clientId = config.getClientId();
+        String clientSecret = config.getClientSecret();
+        String tokenUrl = config.getTokenUrl();
+        identities.get(CSASIdentity.DEFAULT).getTokenManager().configure(clientId, clientSecret, config.getRefreshToken(), tokenUrl);
+        for (Map.Entry<String, Map<String, String>> entry : namedIdentities.entrySet()) {
+            Map<String, String> properties = entry.getValue();
+            if (!properties.containsKey("refreshToken")) {
+                logger.error("Missing refresh token of CSAS identity " + entry.getKey());
+                continue;
             }
-
-            InputStream response = connection.getInputStream();
-            String line = readResponse(response);
-            logger.debug("CSAS response: " + line);
-
-            CSASRefreshTokenResponse resp = gson.fromJson(line, CSASRefreshTokenResponse.class);
-            accessToken = resp.getAccessToken();
-
-        } catch (MalformedURLException e) {
-            logger.error("The URL '" + url + "' is malformed: " + e.toString());
-        } catch (Exception e) {
-            logger.error("Cannot get CSAS token: " + e.toString());
+            CSASIdentity identity = identities.computeIfAbsent(entry.getKey(), name -> new CSASIdentity(name, transport, metrics.getToken()));
+            //the client credentials are inherited from the default identity unless overridden
+            identity.getTokenManager().configure(properties.getOrDefault("clientId", clientId),
+                    properties.getOrDefault("clientSecret", clientSecret), properties.get("refreshToken"), tokenUrl);
         }
-    }
-
-    private String readResponse(InputStream response) throws Exception {
-        String line;
-        StringBuilder body = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(response));
-
-        while ((line = reader.readLine()) != null) {
-            body.append(line).append("\n");
+        Iterator<CSASIdentity> it = identities.values().iterator();
+        while (it.hasNext()) {
+            CSASIdentity identity = it.next();
+            if (!identity.getName().equals(CSASIdentity.DEFAULT) && !namedIdentities.containsKey(identity.getName())) {
+                identity.clear();
+                it.remove();
+            }
         }
-        line = body.toString();
-        logger.debug(line);
-        return line;
+        logger.debug("CSAS identities: {}", identities.values());
     }
 
-    private void readConfiguration(final Map<String, Object> configuration) {
-
-        if (configuration != null) {
-            String refreshIntervalString = (String) configuration.get("refresh");
-            if (StringUtils.isNotBlank(refreshIntervalString)) {
-                refreshInterval = Long.parseLong(refreshIntervalString);
-            }
-
-            String historyIntervalString = (String) configuration.get("history");
-            if (StringUtils.isNotBlank(historyIntervalString)) {
-                historyInterval = Integer.parseInt(historyIntervalString);
-                historyInterval = (historyInterval > 60) ? 60 : historyInterval;
+    private void closeTransactionStores() {
+        for (CSASTransactionStore store : transactionStores.values()) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                logger.error("Cannot close CSAS transaction journal: " + e.toString());
             }
+        }
+        transactionStores.clear();
+    }
 
-            String clientIdString = (String) configuration.get("clientId");
-            if (StringUtils.isNotBlank(clientIdString)) {
-                clientId = clientIdString;
+    /**
+     * @param accountKey account id qualified by the identity name
+     */
+    private CSASTransactionStore createTransactionStore(String accountKey) {
+        String journalDirectory = configuration.getJournalDirectory();
+        if (StringUtils.isNotBlank(journalDirectory)) {
+            try {
+                return new CSASTransactionStore(new CSASTransactionJournal(new File(journalDirectory), accountKey.replace(':', '_')));
+            } catch (IOException e) {
+                logger.error("Cannot open CSAS transaction journal for account " + accountKey + ": " + e.toString());
             }
+        }
+        return new CSASTransactionStore();
+    }
 
-            String clientSecretString = (String) configuration.get("clientSecret");
-            if (StringUtils.isNotBlank(clientSecretString)) {
-                clientSecret = clientSecretString;
-            }
+    /**
+     * Applies the configuration to the identities, the request throttling, the scheduler and
+     * the fetch executor and drops the state depending on it. Runs on the refresh executor
+     * before the cycle, so no request is in flight.
+     */
+    private void applyConfiguration(CSASConfiguration config) {
+        configuration = config;
+        configureIdentities(config);
+        rateLimiter = CSASRateLimiter.forKey(config.getWebAPIKey());
+        rateLimiter.configure(config.getRateLimit(), config.getRateBurst());
+        for (CSASCircuitBreaker breaker : circuitBreakers.values()) {
+            breaker.configure(config.getBreakerThreshold(), config.getBreakerTimeout());
+        }
+        updatePublisher.configure(config.getDebounce());
+        scheduler.configure(config.isAdaptive(), config.getRefreshInterval(), config.getMinRefreshInterval(),
+                config.getMaxRefreshInterval(), config.getActiveFrom(), config.getActiveTo());
+        defaultTransport.setTimeouts(config.getConnectTimeout(), config.getReadTimeout());
+
+        //check the aggregate windows against the new history period
+        refreshPlan = null;
+        updateFetchExecutor(config.getFetchThreads());
+        closeTransactionStores();
+        transactionBuffers.clear();
+        spendingAggregates.clear();
+        for (CSASIdentity identity : identities.values()) {
+            identity.getConditionalCache().clear();
+        }
+        accountFingerprints.clear();
+    }
 
-            String refreshTokenString = (String) configuration.get("refreshToken");
-            if (StringUtils.isNotBlank(refreshTokenString)) {
-                refreshToken = refreshTokenString;
-            }
+    private synchronized void startRefreshExecutor() {
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "CSAS refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 
-            String webAPIKeyString = (String) configuration.get("webAPIKey");
-            if (StringUtils.isNotBlank(webAPIKeyString)) {
-                webAPIKey = webAPIKeyString;
+    private void stopRefreshExecutor() {
+        synchronized (this) {
+            if (refreshExecutor != null) {
+                refreshExecutor.shutdown();
+                refreshExecutor = null;
             }
         }
+        CompletableFuture<Void> running;
+        CompletableFuture<Void> pending;
+        synchronized (cycleLock) {
+            running = runningCycle;
+            pending = pendingCycle;
+            runningCycle = null;
+            pendingCycle = null;
+        }
+        //release the callers waiting for the abandoned cycles
+        if (running != null)
+            running.complete(null);
+        if (pending != null)
+            pending.complete(null);
+    }
 
+    private synchronized void updateFetchExecutor(int fetchThreads) {
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdown();
+            fetchExecutor = null;
+        }
+        if (fetchThreads > 1) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            fetchExecutor = Executors.newFixedThreadPool(fetchThreads, runnable -> {
+                Thread thread = new Thread(runnable, "CSAS fetch " + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     /**
@@ -199,8 +319,10 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
     public void modified(final Map<String, Object> configuration) {
         // update the internal configuration accordingly
         if (configuration != null) {
-            readConfiguration(configuration);
-            execute();
+            //the ConfigAdmin thread must not wait for the network, the running cycle finishes with the old
+            //configuration and the next one applies the new one first
+            pendingConfiguration.set(CSASConfiguration.parse(configuration));
+            refresh();
         }
     }
 
@@ -221,8 +343,19 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
      */
     public void deactivate(final int reason) {
         this.bundleContext = null;
-        accountList.clear();
-        ibanList.clear();
+        stopRefreshExecutor();
+        requestCache.clear();
+        for (CSASIdentity identity : identities.values()) {
+            identity.clear();
+        }
+        closeTransactionStores();
+        transactionBuffers.clear();
+        spendingAggregates.clear();
+        scheduler.clear();
+        accountFingerprints.clear();
+        updatePublisher.clear();
+        updateFetchExecutor(1);
+        metrics.unregister();
         // deallocate resources here that are no longer needed and
         // should be reset when activating this binding again
     }
@@ -240,7 +373,8 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
      */
     @Override
     protected long getRefreshInterval() {
-        return refreshInterval;
+        //with adaptive polling the cycle runs at the shortest interval and polls only the due accounts
+        return scheduler.isEnabled() ? scheduler.getMinInterval() : configuration.getRefreshInterval();
     }
 
     /**
@@ -259,218 +393,864 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         // the frequently executed code (polling) goes here ...
         logger.debug("execute() method is called!");
 
+        //only kicks the cycle off, the network I/O runs on the refresh executor
+        refresh();
+    }
+
+    /**
+     * Starts a refresh cycle unless one is running already. Refreshes requested while a cycle
+     * is running are coalesced into a single cycle following it.
+     *
+     * @return future completed when the requested cycle has finished
+     */
+    public CompletableFuture<Void> refresh() {
+        synchronized (cycleLock) {
+            if (runningCycle != null) {
+                if (pendingCycle == null)
+                    pendingCycle = new CompletableFuture<>();
+                return pendingCycle;
+            }
+            return startCycle(new CompletableFuture<Void>());
+        }
+    }
+
+    private CompletableFuture<Void> startCycle(final CompletableFuture<Void> done) {
+        runningCycle = done;
+        CompletableFuture<Void> cycle;
+        try {
+            cycle = runCycle();
+        } catch (RejectedExecutionException e) {
+            cycle = new CompletableFuture<>();
+            cycle.completeExceptionally(e);
+        }
+        cycle.whenComplete((result, e) -> {
+            if (e != null) {
+                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                if (cause instanceof RejectedExecutionException)
+                    logger.debug("CSAS executor has been shut down => refresh cycle aborted!");
+                else
+                    logger.error("CSAS refresh cycle failed: " + cause.toString());
+            }
+            finishCycle(done);
+        });
+        return done;
+    }
+
+    private void finishCycle(CompletableFuture<Void> done) {
+        synchronized (cycleLock) {
+            //a cycle outliving the deactivation must not finish the cycle of the next activation
+            if (runningCycle == done) {
+                runningCycle = null;
+                CompletableFuture<Void> next = pendingCycle;
+                pendingCycle = null;
+                if (next != null)
+                    startCycle(next);
+            }
+        }
+        done.complete(null);
+    }
+
+    /**
+     * Chains the stages of one refresh cycle: token -> discovery -> fetch and parse per account -> mapping and publishing.
+     * The fetches run on the fetch executor, the other stages on the refresh executor.
+     */
+    private CompletableFuture<Void> runCycle() {
+        final ExecutorService executor = refreshExecutor;
+        if (executor == null)
+            return CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.supplyAsync(this::refreshTokens, executor)
+                .thenApply(this::discoverProducts)
+                .thenCompose(cycle -> fetchAccounts(cycle, executor))
+                .thenAcceptAsync(this::publishItems, executor);
+    }
+
+    /**
+     * @return the new cycle with the identities holding a valid access token, null if there is nothing to refresh
+     */
+    private RefreshCycle refreshTokens() {
+        CSASConfiguration config = pendingConfiguration.getAndSet(null);
+        if (config != null) {
+            applyConfiguration(config);
+        }
+
         if (!bindingsExist()) {
             logger.debug("There is no existing CSAS binding configuration => refresh cycle aborted!");
-            return;
+            return null;
         }
 
-        if (accessToken.equals("")) {
-            refreshToken();
-            if (accessToken.equals(""))
-                return;
-            getAccounts();
-            getCards();
-            getBuildingSavings();
-            getPensions();
-            getInsurances();
-            getSecurities();
-            listUnboundAccounts();
+        requestCache.clear();
+        metrics.cycleStarted();
 
-        } else
-            refreshToken();
+        RefreshCycle cycle = new RefreshCycle();
+        for (CSASIdentity identity : identities.values()) {
+            if (!identity.getTokenManager().isConfigured()) {
+                logger.debug("CSAS identity {} has no refresh token", identity);
+                continue;
+            }
+            if (identity.getTokenManager().getAccessToken() != null)
+                cycle.ready.add(identity);
+        }
+        return cycle;
+    }
 
-        HashMap<String, ArrayList<CSASSimpleTransaction>> transactionsList = new HashMap<>();
+    private RefreshCycle discoverProducts(RefreshCycle cycle) {
+        if (cycle == null)
+            return null;
 
-        for (final CSASBindingProvider provider : providers) {
-            for (final String itemName : provider.getItemNames()) {
+        for (CSASIdentity identity : cycle.ready) {
+            if (!identity.isDiscovered()) {
+                discover(identity);
+            }
+        }
+
+        cycle.plan = getRefreshPlan();
+        cycle.now = System.currentTimeMillis();
+        for (CSASRefreshPlan.AccountPlan account : cycle.plan.getAccounts()) {
+            //the metrics need no token
+            boolean metricsOnly = account.getAccountId().equals(CSASMetrics.METRICS_ID);
+            CSASIdentity identity = identities.get(account.getIdentity());
+            if ((metricsOnly || cycle.ready.contains(identity)) && scheduler.isDue(account.getKey(), cycle.now))
+                cycle.dueAccounts.add(account);
+        }
+        logger.debug("{} of {} CSAS account(s) due", cycle.dueAccounts.size(), cycle.plan.getAccounts().size());
+        return cycle;
+    }
+
+    /**
+     * Fetches the data of the due accounts, in parallel when the fetch executor is configured.
+     *
+     * @return future completed with the cycle once all the fetches have finished
+     */
+    private CompletableFuture<RefreshCycle> fetchAccounts(final RefreshCycle cycle, ExecutorService cycleExecutor) {
+        if (cycle == null)
+            return CompletableFuture.completedFuture(null);
+
+        //balances go first, so they win when the rate limit budget is tight
+        List<Runnable> tasks = new ArrayList<>();
+        List<Runnable> transactionTasks = new ArrayList<>();
+        for (final CSASRefreshPlan.AccountPlan account : cycle.dueAccounts) {
+            final CSASIdentity identity = identities.get(account.getIdentity());
+            final String accountId = account.getAccountId();
+            final String key = account.getKey();
+            if (identity == null)
+                continue;
+            if (account.needsBalance() && accountId.equals("ibod")) {
+                tasks.add(() -> {
+                    CSASTraceSpan span = CSASTracing.fetch(key, CSASEndpoint.LOYALTY);
+                    CSASLoyaltyResponse loyalty = getLoyalty(identity);
+                    if (loyalty != null)
+                        cycle.loyalty.put(key, loyalty);
+                    span.end();
+                });
+            } else if (account.needsBalance()) {
+                tasks.add(() -> {
+                    CSASTraceSpan span = CSASTracing.fetch(key, CSASEndpoint.BALANCE);
+                    CSASAccountBalanceResponse balance = getAccountBalance(identity, accountId);
+                    if (balance != null)
+                        cycle.balances.put(key, balance);
+                    span.end();
+                });
+            }
+            if (account.needsTransactions()) {
+                transactionTasks.add(() -> {
+                    CSASTraceSpan span = CSASTracing.fetch(key, CSASEndpoint.RESERVATIONS);
+                    ArrayList<CSASSimpleTransaction> list = getReservations(identity, accountId);
+                    if (list != null) {
+                        cycle.reservations.put(key, list);
+                        span.setRecords(list.size());
+                    }
+                    span.end();
+                });
+                transactionTasks.add(() -> {
+                    CSASTraceSpan span = CSASTracing.fetch(key, CSASEndpoint.TRANSACTIONS);
+                    //the aggregates need all the transactions of the history period
+                    int limit = account.hasAggregates() ? Integer.MAX_VALUE : account.getMaxTransactionId();
+                    List<CSASSimpleTransaction> list = getTransactions(identity, accountId, limit);
+                    if (list != null) {
+                        cycle.transactions.put(key, list);
+                        span.setRecords(list.size());
+                    }
+                    span.end();
+                });
+            }
+        }
+        tasks.addAll(transactionTasks);
+
+        //sequential fetching queues the tasks on the single refresh thread
+        ExecutorService executor = (fetchExecutor != null) ? fetchExecutor : cycleExecutor;
+        CompletableFuture<?>[] fetches = new CompletableFuture<?>[tasks.size()];
+        for (int i = 0; i < fetches.length; i++) {
+            fetches[i] = CompletableFuture.runAsync(tasks.get(i), executor).exceptionally(e -> {
+                logger.error("Cannot fetch CSAS accounts: " + e.toString());
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(fetches).thenApply(result -> cycle);
+    }
+
+    /**
+     * Maps the fetched data to the items of the due accounts and publishes the changed ones in one burst.
+     */
+    private void publishItems(RefreshCycle cycle) {
+        if (cycle == null)
+            return;
+
+        final long now = cycle.now;
+        for (final CSASRefreshPlan.AccountPlan account : cycle.dueAccounts) {
+            CSASIdentity identity = identities.get(account.getIdentity());
+            String accountId = account.getKey();
+            if (identity == null)
+                continue;
+            List<CSASSimpleTransaction> transactionsList = null;
+            CSASSpendingAggregates aggregates = null;
+            if (cycle.reservations.containsKey(accountId) && cycle.transactions.containsKey(accountId)) {
+                CSASTransactionBuffer buffer = reconcileTransactions(account, cycle.reservations.get(accountId), cycle.transactions.get(accountId));
+                transactionsList = buffer;
+                if (account.hasAggregates())
+                    aggregates = updateAggregates(account, cycle.transactions.get(accountId), now);
+            }
+
+            Integer payload = getPayloadFingerprint(cycle.plan.getVersion(), account, cycle.balances.get(accountId), transactionsList, aggregates);
+            if (payload != null && payload.equals(accountFingerprints.get(accountId))) {
+                //the data of the items have not changed, neither have the items
+                logger.trace("CSAS account {} unchanged", accountId);
+                scheduler.polled(accountId, payload, now);
+                continue;
+            }
+
+            int fingerprint = 1;
+            boolean polled = false;
+            int mapped = 0;
+            CSASTraceSpan mappingSpan = CSASTracing.mapping(accountId);
+
+            for (final CSASRefreshPlan.ItemPlan item : account.getItems()) {
+                String itemName = item.getItemName();
                 State oldValue;
                 State newValue;
                 try {
-                    oldValue = itemRegistry.getItem(itemName).getState();
-
-                    if (provider.getItemType(itemName).equals(CSASItemType.DISPOSABLE_BALANCE) || provider.getItemType(itemName).equals(CSASItemType.BALANCE)) {
-                        String balance = getBalance(provider.getItemId(itemName), provider.getItemType(itemName));
-                        newValue = new StringType(balance);
+                    if (item.getType() == CSASItemType.METRIC) {
+                        newValue = getMetricValue(item);
+                    } else if (isBalance(item.getType())) {
+                        newValue = getBalance(account, item, cycle);
                     } else {
-                        newValue = new StringType(getTransactionValue(itemName, transactionsList, provider));
+                        newValue = item.getType().isAggregate() ? getAggregateValue(item, aggregates) : getTransactionValue(item, transactionsList);
+                    }
+                    if (newValue == null) {
+                        //the data could not be fetched, keep the last good value
+                        continue;
                     }
+
+                    oldValue = itemRegistry.getItem(itemName).getState();
+                    polled = true;
+                    mapped++;
+                    fingerprint = 31 * fingerprint + newValue.hashCode();
                     if (!oldValue.equals(newValue)) {
-                        eventPublisher.postUpdate(itemName, newValue);
+                        updatePublisher.stage(accountId, itemName, newValue, now);
+                    } else {
+                        updatePublisher.cancel(itemName);
                     }
                 } catch (ItemNotFoundException e) {
                     logger.error("Cannot find item " + itemName + " in item registry!");
                 }
             }
+            mappingSpan.setRecords(mapped).end();
+            if (payload != null && mapped == account.getItems().size()) {
+                accountFingerprints.put(accountId, payload);
+            } else {
+                accountFingerprints.remove(accountId);
+            }
+            //the scheduler compares the fingerprints of the cycles, so the payload one is preferred whenever there is one
+            if (polled || payload != null)
+                scheduler.polled(accountId, payload != null ? payload : fingerprint, now);
         }
 
+        //all items are computed, publish their updates in one burst
+        int updates = updatePublisher.publish(eventPublisher, System.currentTimeMillis());
+        metrics.cycleFinished(updates);
+    }
+
+    /**
+     * Lists the products of the identity, the responses of the unchanged product lists are only revalidated.
+     */
+    private void discover(CSASIdentity identity) {
+        CSASTraceSpan span = CSASTracing.discovery("accounts");
+        getAccounts(identity);
+        span.end();
+        span = CSASTracing.discovery("cards");
+        getCards(identity);
+        span.end();
+        span = CSASTracing.discovery("buildings");
+        getBuildingSavings(identity);
+        span.end();
+        span = CSASTracing.discovery("pensions");
+        getPensions(identity);
+        span.end();
+        span = CSASTracing.discovery("insurances");
+        getInsurances(identity);
+        span.end();
+        span = CSASTracing.discovery("securities");
+        getSecurities(identity);
+        span.end();
+        listUnboundAccounts(identity);
+        identity.setDiscovered(true);
     }
 
-    private String getTransactionValue(String itemName, HashMap<String, ArrayList<CSASSimpleTransaction>> transactionsList, CSASBindingProvider provider) {
-        String accountId = provider.getItemId(itemName);
-        if (!transactionsList.containsKey(accountId)) {
-            ArrayList<CSASSimpleTransaction> list = new ArrayList<>();
-            list.addAll(getReservations(accountId));
-            list.addAll(getTransactions(accountId));
-            transactionsList.put(accountId, list);
+    /**
+     * Merges the fetched reservations and bookings into the transaction buffer of the account.
+     *
+     * @return positional view of the pending reservations and the bookings
+     */
+    private CSASTransactionBuffer reconcileTransactions(CSASRefreshPlan.AccountPlan account, List<CSASSimpleTransaction> reservations, List<CSASSimpleTransaction> transactions) {
+        CSASTransactionBuffer buffer = transactionBuffers.get(account.getKey());
+        if (buffer == null || buffer.getCapacity() != Math.max(1, account.getMaxTransactionId())) {
+            buffer = new CSASTransactionBuffer(account.getMaxTransactionId());
+            transactionBuffers.put(account.getKey(), buffer);
         }
-        int id = provider.getTransactionId(itemName);
-        if (id > transactionsList.get(accountId).size())
-            return "";
+        buffer.update(reservations, transactions);
+        if (buffer.getReconciled() > 0) {
+            logger.debug("{} booked CSAS reservation(s) of account {} hidden", buffer.getReconciled(), account.getKey());
+        }
+        return buffer;
+    }
 
+    /**
+     * Adds the new bookings of the account to its aggregates, all of them are aggregated again
+     * when the bound windows have changed.
+     */
+    private CSASSpendingAggregates updateAggregates(CSASRefreshPlan.AccountPlan account, List<CSASSimpleTransaction> transactions, long now) {
+        CSASSpendingAggregates aggregates = spendingAggregates.get(account.getKey());
+        if (aggregates == null || !aggregates.getWindows().equals(account.getWindows())) {
+            aggregates = new CSASSpendingAggregates(account.getWindows());
+            spendingAggregates.put(account.getKey(), aggregates);
+        }
+        aggregates.update(transactions, now);
+        return aggregates;
+    }
 
+    /**
+     * Hashes the fetched data the items of the account are mapped from, i.e. the balances
+     * and the bound transaction positions. Accounts with missing data, the loyalty program
+     * and the metrics have no fingerprint and are always mapped.
+     *
+     * @return the fingerprint or null if the items have to be mapped
+     */
+    private Integer getPayloadFingerprint(int version, CSASRefreshPlan.AccountPlan account, CSASAccountBalanceResponse balance, List<CSASSimpleTransaction> transactionsList, CSASSpendingAggregates aggregates) {
+        String accountId = account.getAccountId();
+        if (accountId.equals("ibod") || accountId.equals(CSASMetrics.METRICS_ID))
+            return null;
+
+        int fingerprint = version;
+        if (account.needsBalance()) {
+            if (balance == null)
+                return null;
+            fingerprint = 31 * fingerprint + hashAmount(balance.getBalance());
+            fingerprint = 31 * fingerprint + hashAmount(balance.getDisposable());
+        }
+        if (account.needsTransactions()) {
+            if (transactionsList == null)
+                return null;
+            int count = Math.min(transactionsList.size(), account.getMaxTransactionId());
+            fingerprint = 31 * fingerprint + count;
+            for (int i = 0; i < count; i++) {
+                fingerprint = 31 * fingerprint + transactionsList.get(i).hashCode();
+            }
+        }
+        if (account.hasAggregates()) {
+            //the windows move on even without new transactions
+            if (aggregates == null)
+                return null;
+            fingerprint = 31 * fingerprint + aggregates.getFingerprint();
+        }
+        return fingerprint;
+    }
+
+    private int hashAmount(CSASAmount amount) {
+        return (amount != null) ? Objects.hash(amount.getValue(), amount.getPrecision(), amount.getCurrency()) : 0;
+    }
+
+    /**
+     * @return the metric value of the previous refresh cycle
+     */
+    private State getMetricValue(CSASRefreshPlan.ItemPlan item) {
+        Number value = metrics.getValue(item.getMetric());
+        if (value == null)
+            return UnDefType.UNDEF;
+        return item.isNumeric() ? new DecimalType(new BigDecimal(value.toString())) : new StringType(value.toString());
+    }
+
+    /**
+     * Returns the refresh plan, compiling it first if the bindings have changed since.
+     */
+    private CSASRefreshPlan getRefreshPlan() {
+        CSASRefreshPlan plan = refreshPlan;
+        int version = bindingsVersion.get();
+        if (plan == null || plan.getVersion() != version) {
+            plan = CSASRefreshPlan.compile(version, providers);
+            refreshPlan = plan;
+            logger.debug("CSAS refresh plan compiled for {} account(s)", plan.getAccounts().size());
+            checkAggregateWindows(plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Warns about the aggregate windows reaching beyond the history period, only the journal
+     * keeps the older transactions.
+     */
+    private void checkAggregateWindows(CSASRefreshPlan plan) {
+        CSASConfiguration config = configuration;
+        if (StringUtils.isNotBlank(config.getJournalDirectory()))
+            return;
+        int historyInterval = config.getHistoryInterval();
+        long now = System.currentTimeMillis();
+        long oldest = truncate(addDays(new Date(now), -historyInterval), Calendar.DAY_OF_MONTH).getTime();
+        for (CSASRefreshPlan.AccountPlan account : plan.getAccounts()) {
+            for (String window : account.getWindows()) {
+                if (CSASSpendingAggregates.getStart(window, now) < oldest) {
+                    logger.warn("CSAS aggregate window {} of account {} is longer than the history of {} days, set csas:journal or a longer csas:history", window, account.getKey(), historyInterval);
+                }
+            }
+        }
+    }
+
+    /**
+     * @{inheritDoc}
+     */
+    @Override
+    public void bindingChanged(BindingProvider provider, String itemName) {
+        super.bindingChanged(provider, itemName);
+        bindingsVersion.incrementAndGet();
+        //list the unbound accounts again, unchanged discovery responses are only revalidated
+        resetDiscovery();
+    }
+
+    /**
+     * @{inheritDoc}
+     */
+    @Override
+    public void allBindingsChanged(BindingProvider provider) {
+        super.allBindingsChanged(provider);
+        bindingsVersion.incrementAndGet();
+        resetDiscovery();
+    }
+
+    private void resetDiscovery() {
+        for (CSASIdentity identity : identities.values()) {
+            identity.setDiscovered(false);
+        }
+    }
+
+    private boolean isBalance(CSASItemType type) {
+        return type.equals(CSASItemType.DISPOSABLE_BALANCE) || type.equals(CSASItemType.BALANCE);
+    }
+
+    /**
+     * @return the state of the transaction item or null if the transactions could not be fetched
+     */
+    private State getTransactionValue(CSASRefreshPlan.ItemPlan item, List<CSASSimpleTransaction> transactionsList) {
+        if (transactionsList == null)
+            return null;
+
+        int id = item.getTransactionId();
+        if (id > transactionsList.size())
+            return item.isNumeric() ? UnDefType.UNDEF : new StringType("");
+
+        CSASSimpleTransaction tran = transactionsList.get(id - 1);
         String result = "";
-        CSASItemType type = provider.getItemType(itemName);
-        switch (type) {
+        switch (item.getType()) {
             case TRANSACTION_BALANCE:
-                result = transactionsList.get(accountId).get(id - 1).getBalance();
+                if (item.isNumeric())
+                    return toDecimal(tran.getAmount());
+                result = tran.getBalance();
                 break;
             case TRANSACTION_INFO:
-                result = transactionsList.get(accountId).get(id - 1).getAccountPartyInfo();
+                result = tran.getAccountPartyInfo();
                 break;
             case TRANSACTION_DESCRIPTION:
-                result = transactionsList.get(accountId).get(id - 1).getDescription();
+                result = tran.getDescription();
                 break;
             case TRANSACTION_VS:
-                result = transactionsList.get(accountId).get(id - 1).getVariableSymbol();
+                result = tran.getVariableSymbol();
                 break;
             case TRANSACTION_PARTY:
-                result = transactionsList.get(accountId).get(id - 1).getAccountPartyDescription();
+                result = tran.getAccountPartyDescription();
                 break;
         }
-        return result;
+        return new StringType(result);
+    }
+
+    /**
+     * @return the state of the aggregate item or null if the transactions could not be fetched
+     */
+    private State getAggregateValue(CSASRefreshPlan.ItemPlan item, CSASSpendingAggregates aggregates) {
+        if (aggregates == null)
+            return null;
+
+        String window = item.getWindow();
+        if (item.getType() == CSASItemType.AGGREGATE_COUNT) {
+            int count = aggregates.getCount(window);
+            return item.isNumeric() ? new DecimalType(BigDecimal.valueOf(count)) : new StringType(Integer.toString(count));
+        }
+
+        CSASMoney value;
+        switch (item.getType()) {
+            case AGGREGATE_DEBITS:
+                value = aggregates.getDebits(window);
+                break;
+            case AGGREGATE_CREDITS:
+                value = aggregates.getCredits(window);
+                break;
+            case AGGREGATE_MAX:
+                value = aggregates.getLargestPayment(window);
+                break;
+            default:
+                value = aggregates.getSum(window);
+        }
+        if (item.isNumeric())
+            return toDecimal(value);
+        return new StringType(value != null ? value.toString() : "");
     }
 
-    private String getIbanFromAccountId(String accountId) {
-        if (ibanList.containsKey(accountId)) {
-            return ibanList.get(accountId);
+    private String getIbanFromAccountId(CSASIdentity identity, String accountId) {
+        String iban = identity.getIbans().get(accountId);
+        if (iban != null) {
+            return iban;
         }
 
-        logger.error("Cannot get IBAN for account: " + accountId);
+        logger.error("Cannot get IBAN for account: " + identity.getAccountKey(accountId));
         return "";
     }
 
-    private String getBalance(String accountId, CSASItemType balanceType) {
+    /**
+     * @return the balance state of the item or null if the balance could not be fetched
+     */
+    private State getBalance(CSASRefreshPlan.AccountPlan account, CSASRefreshPlan.ItemPlan item, RefreshCycle cycle) {
 
-        if (accountId.equals("ibod")) {
-            return getLoyaltyBalance();
+        if (account.getAccountId().equals("ibod")) {
+            return getLoyaltyBalance(cycle.loyalty.get(account.getKey()), item.isNumeric());
         } else {
-            return getAccountBalance(accountId, balanceType);
+            CSASAccountBalanceResponse resp = cycle.balances.get(account.getKey());
+            if (resp == null)
+                return null;
+
+            try {
+                CSASAmount bal;
+                if (item.getType().equals(CSASItemType.BALANCE))
+                    bal = resp.getBalance();
+                else
+                    bal = resp.getDisposable();
+
+                CSASMoney balance = CSASMoney.valueOf(bal);
+                logger.debug("CSAS Balance: {}", balance);
+                return item.isNumeric() ? toDecimal(balance) : new StringType(balance.toString());
+            } catch (Exception e) {
+                logger.error("Cannot get CSAS balance: " + e.toString());
+                return item.isNumeric() ? UnDefType.UNDEF : new StringType("");
+            }
         }
     }
 
-    private String getLoyaltyBalance() {
+    private State toDecimal(CSASMoney money) {
+        return (money != null) ? new DecimalType(money.toBigDecimal()) : UnDefType.UNDEF;
+    }
+
+    /**
+     * @return the loyalty points state of the item or null if the points could not be fetched
+     */
+    private State getLoyaltyBalance(CSASLoyaltyResponse resp, boolean numeric) {
+        if (resp == null)
+            return null;
+
+        String points = resp.getPointsCount();
+        if (numeric)
+            return points != null ? new DecimalType(new BigDecimal(points)) : UnDefType.UNDEF;
+        return new StringType(points != null ? formatMoney(points) : "N/A");
+    }
+
+    private CSASLoyaltyResponse getLoyalty(CSASIdentity identity) {
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "cz/my/contracts/loyalty";
+            url = configuration.getApiUrl() + "cz/my/contracts/loyalty";
 
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getLoyalty: " + line);
-
-            CSASLoyaltyResponse resp = gson.fromJson(line, CSASLoyaltyResponse.class);
-            return resp.getPointsCount() != null ? formatMoney(resp.getPointsCount()) : "N/A";
+            return DoNetbankingRequest(identity, url, CSASEndpoint.LOYALTY, CSASLoyaltyResponse.class);
         } catch (MalformedURLException e) {
             logger.error("The URL '" + url + "' is malformed: " + e.toString());
         } catch (Exception e) {
             logger.error("Cannot get CSAS loyalty points: " + e.toString());
         }
-        return "";
+        return null;
     }
 
-    private String DoNetbankingRequest(String url) throws Exception {
-        URL cookieUrl = new URL(url);
-        HttpURLConnection connection = (HttpURLConnection) cookieUrl.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("WEB-API-key", webAPIKey);
-        connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+    private <T> T DoNetbankingRequest(CSASIdentity identity, String url, CSASEndpoint endpoint, final Class<T> responseType) throws Exception {
+        return DoNetbankingRequest(identity, url, endpoint, reader -> gson.fromJson(reader, responseType));
+    }
 
-        InputStream response = connection.getInputStream();
-        return readResponse(response);
+    private <T> T DoNetbankingRequest(final CSASIdentity identity, final String url, final CSASEndpoint endpoint, final CSASResponseParser<T> parser) throws Exception {
+        final AtomicBoolean sent = new AtomicBoolean();
+        //the same URL gives different data to different identities
+        T result = requestCache.get(identity.getName() + " " + url, () -> {
+            sent.set(true);
+            return sendWithRetries(identity, url, endpoint, parser);
+        });
+        if (!sent.get())
+            metrics.getEndpoint(endpoint).cacheHit();
+        return result;
     }
 
-    private String getAccountBalance(String accountId, CSASItemType balanceType) {
-        String url = null;
+    /**
+     * Sends the request through the circuit breaker of its endpoint family. Transient failures
+     * (I/O errors, timeouts, 5xx responses) are retried with jittered exponential backoff.
+     */
+    private <T> T sendWithRetries(CSASIdentity identity, String url, CSASEndpoint endpoint, CSASResponseParser<T> parser) throws Exception {
+        CSASCircuitBreaker breaker = circuitBreakers.get(endpoint);
+        if (!breaker.allowRequest()) {
+            metrics.getEndpoint(endpoint).failed();
+            throw new IOException("CSAS " + endpoint + " endpoint suspended after repeated failures");
+        }
 
+        int attempt = 0;
+        AtomicBoolean sent = new AtomicBoolean();
+        //whether the breaker has got a verdict, otherwise its trial request is released when leaving
+        boolean recorded = false;
         try {
-            url = NETBANKING_V3 + "my/accounts/" + accountId + "/balance";
+            while (true) {
+                sent.set(false);
+                try {
+                    T result = sendNetbankingRequest(identity, url, endpoint, parser, sent);
+                    breaker.success();
+                    recorded = true;
+                    return result;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                } catch (Exception e) {
+                    if (!sent.get()) {
+                        //the endpoint has not been contacted (no token, no rate limit budget)
+                        throw e;
+                    }
+                    metrics.getEndpoint(endpoint).failed();
+                    if (e instanceof CSASHttpException && ((CSASHttpException) e).getStatus() == HTTP_TOO_MANY_REQUESTS) {
+                        //throttled, says nothing about the health of the endpoint
+                        throw e;
+                    }
+                    if (!isTransientFailure(e)) {
+                        breaker.success();
+                        recorded = true;
+                        throw e;
+                    }
+                    if (attempt >= configuration.getMaxRetries()) {
+                        breaker.failure();
+                        recorded = true;
+                        throw e;
+                    }
+                    long backoff = RETRY_BACKOFF << attempt++;
+                    long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                    logger.debug("CSAS request of {} failed ({}), retrying in {} ms", url, e.toString(), delay);
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw ie;
+                    }
+                }
+            }
+        } finally {
+            if (!recorded)
+                breaker.cancel();
+        }
+    }
 
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getBalance: " + line);
+    private boolean isTransientFailure(Exception e) {
+        if (e instanceof CSASHttpException) {
+            int status = ((CSASHttpException) e).getStatus();
+            return status >= 500 || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT;
+        }
+        return e instanceof IOException;
+    }
 
-            CSASAccountBalanceResponse resp = gson.fromJson(line, CSASAccountBalanceResponse.class);
-            CSASAmount bal;
-            if (balanceType.equals(CSASItemType.BALANCE))
-                bal = resp.getBalance();
-            else
-                bal = resp.getDisposable();
+    private <T> T sendNetbankingRequest(CSASIdentity identity, String url, CSASEndpoint endpoint, CSASResponseParser<T> parser, AtomicBoolean sent) throws Exception {
+        CSASEndpointMetrics endpointMetrics = metrics.getEndpoint(endpoint);
+        CSASConditionalCache conditionalCache = identity.getConditionalCache();
+        boolean tokenRetried = false;
+        boolean throttleRetried = false;
+        while (true) {
+            String token = getAccessToken(identity);
+            Map<String, String> headers = getNetbankingHeaders(token);
+            if (endpoint.isConditional())
+                conditionalCache.addValidators(url, headers);
+            rateLimiter.acquire(endpoint.getPriority(), RATE_LIMIT_WAIT);
+            sent.set(true);
+            long start = System.currentTimeMillis();
+            try (CSASHttpResponse response = transport.execute("GET", url, headers, null)) {
+                endpointMetrics.requested(System.currentTimeMillis() - start);
+                int status = response.getStatus();
+                if (status == HttpURLConnection.HTTP_UNAUTHORIZED && !tokenRetried) {
+                    //the token has expired in the meantime, retry once with a fresh one
+                    identity.getTokenManager().invalidate(token);
+                    tokenRetried = true;
+                    continue;
+                }
+                if (status == HTTP_TOO_MANY_REQUESTS) {
+                    //hold back all requests of the WebAPI key, this one is retried once when allowed again
+                    rateLimiter.throttled(response.getHeader("Retry-After"));
+                    if (!throttleRetried) {
+                        throttleRetried = true;
+                        continue;
+                    }
+                }
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    T cached = conditionalCache.get(url);
+                    if (cached != null) {
+                        endpointMetrics.notModified();
+                        logger.debug("CSAS response of {} not modified", url);
+                        return cached;
+                    }
+                }
+                T result = readNetbankingResponse(url, endpoint, response, parser, endpointMetrics);
+                if (endpoint.isConditional())
+                    conditionalCache.put(url, response, result);
+                return result;
+            }
+        }
+    }
 
-            String balance = readBalance(bal);
-            logger.debug("CSAS Balance: " + balance);
-            return formatMoney(balance);
-        } catch (MalformedURLException e) {
-            logger.error("The URL '" + url + "' is malformed: " + e.toString());
-        } catch (Exception e) {
-            logger.error("Cannot get CSAS balance: " + e.toString());
+    private <T> T readNetbankingResponse(String url, CSASEndpoint endpoint, CSASHttpResponse response, CSASResponseParser<T> parser, CSASEndpointMetrics endpointMetrics) throws Exception {
+        if (!response.isSuccessful()) {
+            throw new CSASHttpException(response.getStatus(), url);
         }
-        return "";
+        CSASTraceSpan span = CSASTracing.parse(endpoint);
+        long start = System.currentTimeMillis();
+        CSASMetrics.CountingInputStream body = new CSASMetrics.CountingInputStream(response.getBody());
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        T result;
+        try {
+            result = parser.parse(reader);
+        } catch (MalformedJsonException | EOFException | IllegalStateException | NumberFormatException e) {
+            //a malformed body is not an I/O failure, sending the request again would not help
+            throw new JsonParseException("Cannot parse CSAS response of " + url, e);
+        }
+        endpointMetrics.parsed(System.currentTimeMillis() - start, body.getCount());
+        span.setBytes(body.getCount());
+        if (result instanceof CSASRecordPage)
+            span.setRecords(((CSASRecordPage) result).getRecords().size());
+        span.end();
+        logger.debug("CSAS response of {} parsed", url);
+        return result;
     }
 
-    private String readBalance(CSASAmount balance) {
-        String value = balance.getValue();
-        String currency = balance.getCurrency();
+    /**
+     * Reads the records of the named array of a response object one by one and converts
+     * each of them right away, without building the list of the parsed records.
+     * The paging info of the response is read as well.
+     */
+    <T> CSASRecordPage readRecords(JsonReader reader, String arrayName, Class<T> recordType, CSASRecordConverter<T> converter) throws Exception {
+        CSASRecordPage page = new CSASRecordPage();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (name.equals(arrayName) && token == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    T record = gson.fromJson(reader, recordType);
+                    page.getRecords().add(converter.convert(record));
+                }
+                reader.endArray();
+            } else if (name.equals("pageNumber") && token == JsonToken.NUMBER) {
+                page.setPageNumber(reader.nextInt());
+            } else if (name.equals("pageCount") && token == JsonToken.NUMBER) {
+                page.setPageCount(reader.nextInt());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return page;
+    }
 
-        int precision = balance.getPrecision();
-        int places = value.length();
+    private String getAccessToken(CSASIdentity identity) throws Exception {
+        String token = identity.getTokenManager().getAccessToken();
+        if (token == null) {
+            throw new IllegalStateException("No valid CSAS access token of identity " + identity);
+        }
+        return token;
+    }
 
-        return (precision == 0) ? value + ".00 " + currency : value.substring(0, places - precision) + "." + value.substring(places - precision) + " " + currency;
+    private Map<String, String> getNetbankingHeaders(String token) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("WEB-API-key", configuration.getWebAPIKey());
+        headers.put("Authorization", "Bearer " + token);
+        return headers;
     }
 
-    private String safeGetString(JsonObject jobject, String value) {
-        if (jobject == null || jobject.isJsonNull() || !jobject.has(value)) return "null";
-        return (jobject.get(value).isJsonNull() ? "N/A" : jobject.get(value).getAsString());
+    private CSASAccountBalanceResponse getAccountBalance(CSASIdentity identity, String accountId) {
+        String url = null;
+
+        try {
+            url = configuration.getApiUrl() + "my/accounts/" + accountId + "/balance";
+
+            return DoNetbankingRequest(identity, url, CSASEndpoint.BALANCE, CSASAccountBalanceResponse.class);
+        } catch (MalformedURLException e) {
+            logger.error("The URL '" + url + "' is malformed: " + e.toString());
+        } catch (Exception e) {
+            logger.error("Cannot get CSAS balance: " + e.toString());
+        }
+        return null;
     }
 
-    private String formatMoney(String balance) {
-        String newBalance = "";
+    String formatMoney(String balance) {
         int len = balance.length();
         int dec = balance.indexOf('.');
         if (dec >= 0) {
             len = dec;
-            newBalance = balance.substring(dec);
         }
 
-        int j = 0;
-        for (int i = len - 1; i >= 0; i--) {
-            char c = balance.charAt(i);
-            newBalance = c + newBalance;
-            if (++j % 3 == 0 && i > 0 && balance.charAt(i - 1) != '-')
-                newBalance = " " + newBalance;
+        StringBuilder sb = new StringBuilder(len + len / 3 + balance.length() - len);
+        int sign = (len > 0 && balance.charAt(0) == '-') ? 1 : 0;
+        sb.append(balance, 0, sign);
+        for (int i = sign; i < len; i++) {
+            if (i > sign && (len - i) % 3 == 0)
+                sb.append(' ');
+            sb.append(balance.charAt(i));
         }
-        return newBalance;
+        return sb.append(balance, len, balance.length()).toString();
     }
 
 
-    private ArrayList<CSASSimpleTransaction> getTransactions(String accountId) {
+    /**
+     * @param maxPosition highest bound transaction position of the account, paging stops once it is covered
+     */
+    private List<CSASSimpleTransaction> getTransactions(CSASIdentity identity, String accountId, int maxPosition) {
 
         String url = null;
-        ArrayList<CSASSimpleTransaction> transactionsList = new ArrayList<>();
+        List<CSASSimpleTransaction> transactionsList = null;
 
+        CSASConfiguration config = configuration;
         SimpleDateFormat requestFormat = new SimpleDateFormat("yyyy-MM-dd");
+        Date oldest = truncate(addDays(new Date(), -config.getHistoryInterval()), Calendar.DAY_OF_MONTH);
+        CSASTransactionStore store = null;
+        Date from = oldest;
+        if (config.isIncrementalSync() || StringUtils.isNotBlank(config.getJournalDirectory())) {
+            store = transactionStores.computeIfAbsent(identity.getAccountKey(accountId), this::createTransactionStore);
+            from = store.getSyncStart(oldest);
+            transactionsList = store.getTransactions();
+        }
 
         try {
-            url = NETBANKING_V3 + "cz/my/accounts/" + getIbanFromAccountId(accountId) + "/transactions?dateStart=" + requestFormat.format(addDays(new Date(), -historyInterval)) + "T00:00:00+01:00&dateEnd=" + requestFormat.format(new Date()) + "T00:00:00+01:00";
-
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getTransactions: {}", line);
-
-            CSASTransactionsResponse resp = gson.fromJson(line, CSASTransactionsResponse.class);
-            if (resp.getTransactions() != null) {
-                for (CSASTransaction tran : resp.getTransactions()) {
-                    transactionsList.add(createTransaction(tran));
-                }
+            url = configuration.getApiUrl() + "cz/my/accounts/" + getIbanFromAccountId(identity, accountId) + "/transactions?dateStart=" + requestFormat.format(from) + "T00:00:00+01:00&dateEnd=" + requestFormat.format(new Date()) + "T00:00:00+01:00";
+
+            //the locally held transactions need the complete period, otherwise only the bound positions are needed
+            int limit = (store != null) ? Integer.MAX_VALUE : maxPosition;
+            transactionsList = getTransactionPages(identity, url, limit);
+            if (store != null) {
+                logger.debug("Fetched {} CSAS transaction(s) since {} for account {}", transactionsList.size(), requestFormat.format(from), accountId);
+                store.merge(from, oldest, transactionsList);
+                transactionsList = store.getTransactions();
             }
 
-            logger.trace("Transactions: " + transactionsList.toString());
+            logger.trace("Transactions: {}", transactionsList);
             return transactionsList;
 
         } catch (MalformedURLException e) {
@@ -481,25 +1261,38 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         return transactionsList;
     }
 
-    private ArrayList<CSASSimpleTransaction> getReservations(String accountId) {
+    /**
+     * Fetches the pages of transactions lazily until the limit is reached or there are no more pages.
+     */
+    private ArrayList<CSASSimpleTransaction> getTransactionPages(CSASIdentity identity, String url, int limit) throws Exception {
+        int pageSize = configuration.getPageSize();
+        if (pageSize <= 0) {
+            return DoNetbankingRequest(identity, url, CSASEndpoint.TRANSACTIONS, reader -> readRecords(reader, "transactions", CSASTransaction.class, this::createTransaction)).getRecords();
+        }
+
+        ArrayList<CSASSimpleTransaction> transactionsList = new ArrayList<>();
+        int pageNumber = 0;
+        CSASRecordPage page;
+        do {
+            String pageUrl = url + "&size=" + pageSize + "&page=" + pageNumber++;
+            page = DoNetbankingRequest(identity, pageUrl, CSASEndpoint.TRANSACTIONS, reader -> readRecords(reader, "transactions", CSASTransaction.class, this::createTransaction));
+            transactionsList.addAll(page.getRecords());
+        } while (transactionsList.size() < limit && page.hasNextPage() && !page.getRecords().isEmpty());
+        logger.debug("Fetched {} page(s) of CSAS transactions", pageNumber);
+        return transactionsList;
+    }
+
+    private ArrayList<CSASSimpleTransaction> getReservations(CSASIdentity identity, String accountId) {
 
         String url = null;
-        ArrayList<CSASSimpleTransaction> reservationsList = new ArrayList<>();
+        ArrayList<CSASSimpleTransaction> reservationsList = null;
 
         try {
-            url = NETBANKING_V3 + "my/accounts/" + accountId + "/reservations";
-
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getReservations: " + line);
+            url = configuration.getApiUrl() + "my/accounts/" + accountId + "/reservations";
 
-            CSASReservationsResponse resp = gson.fromJson(line, CSASReservationsResponse.class);
-            if (resp.getReservations() != null) {
-                for (CSASReservation reservation : resp.getReservations()) {
-                    reservationsList.add(createReservation(reservation));
-                }
-            }
+            reservationsList = DoNetbankingRequest(identity, url, CSASEndpoint.RESERVATIONS, reader -> readRecords(reader, "reservations", CSASReservation.class, this::createReservation)).getRecords();
 
-            logger.trace("Reservations: " + reservationsList.toString());
+            logger.trace("Reservations: {}", reservationsList);
             return reservationsList;
 
         } catch (MalformedURLException e) {
@@ -510,7 +1303,7 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         return reservationsList;
     }
 
-    private CSASSimpleTransaction createTransaction(CSASTransaction csasTran) throws ParseException {
+    CSASSimpleTransaction createTransaction(CSASTransaction csasTran) throws ParseException {
 
         SimpleDateFormat myUTCFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
         SimpleDateFormat requiredFormat = new SimpleDateFormat("dd.MM.yyyy");
@@ -522,10 +1315,12 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
 
             Date date = myUTCFormat.parse(csasTran.getBookingDate());
             String shortDate = requiredFormat.format(date);
+            tran.setDate(date);
 
-            String balance = formatMoney(readBalance(amount)) + " " + shortDate;
+            CSASMoney money = CSASMoney.valueOf(amount);
             String description = csasTran.getDescription();
-            tran.setBalance(balance);
+            tran.setAmount(money);
+            tran.setBalance(money.appendTo(new StringBuilder(48)).append(' ').append(shortDate).toString());
 
             if (description != null) {
                 tran.setDescription(description);
@@ -554,7 +1349,7 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         return tran;
     }
 
-    private CSASSimpleTransaction createReservation(CSASReservation reservation) throws ParseException {
+    CSASSimpleTransaction createReservation(CSASReservation reservation) throws ParseException {
 
         SimpleDateFormat myUTCFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
         SimpleDateFormat requiredFormat = new SimpleDateFormat("dd.MM.yyyy");
@@ -567,9 +1362,11 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         try {
             CSASAmount amount = reservation.getAmount();
 
-            String balance = "RES " + formatMoney(readBalance(amount)) + " " + shortDate;
+            CSASMoney money = CSASMoney.valueOf(amount);
 
-            tran.setBalance(balance);
+            tran.setAmount(money);
+            tran.setBalance(money.appendTo(new StringBuilder(48).append("RES ")).append(' ').append(shortDate).toString());
+            tran.setDate(date);
 
             if (reservation.getDescription() != null) {
                 tran.setDescription(reservation.getDescription());
@@ -590,22 +1387,19 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         return tran;
     }
 
-    private void getCards() {
+    private void getCards(CSASIdentity identity) {
 
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "my/cards";
+            url = configuration.getApiUrl() + "my/cards";
 
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getCards: " + line);
-
-            CSASCardsResponse resp = gson.fromJson(line, CSASCardsResponse.class);
+            CSASCardsResponse resp = DoNetbankingRequest(identity, url, CSASEndpoint.CARDS, CSASCardsResponse.class);
             if (resp.getCards() != null) {
                 for (CSASCard card : resp.getCards()) {
                     CSASAccount cardAccount = card.getMainAccount();
                     if (cardAccount != null) {
-                        readAccount(cardAccount.getId(), cardAccount.getAccountno());
+                        readAccount(identity, cardAccount.getId(), cardAccount.getAccountno());
                     }
                 }
             }
@@ -617,23 +1411,18 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         }
     }
 
-    private void getSecurities() {
+    private void getSecurities(CSASIdentity identity) {
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "my/securities";
-
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getSecurities: " + line);
+            url = configuration.getApiUrl() + "my/securities";
 
-            CSASSecuritiesResponse resp = gson.fromJson(line, CSASSecuritiesResponse.class);
+            CSASSecuritiesResponse resp = DoNetbankingRequest(identity, url, CSASEndpoint.SECURITIES, CSASSecuritiesResponse.class);
             if (resp.getSecuritiesAccounts() != null) {
                 for (CSASSecuritiesAccount mainAccount : resp.getSecuritiesAccounts()) {
                     String id = mainAccount.getId();
                     String accountno = mainAccount.getAccountno();
-                    if (!accountList.containsKey(id)) {
-                        accountList.put(id, "Securities account: " + accountno);
-                    }
+                    identity.getAccounts().putIfAbsent(id, "Securities account: " + accountno);
                 }
             }
         } catch (MalformedURLException e) {
@@ -643,23 +1432,19 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         }
     }
 
-    private void getPensions() {
+    private void getPensions(CSASIdentity identity) {
 
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "cz/my/contracts/pensions";
-
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getPensions: " + line);
+            url = configuration.getApiUrl() + "cz/my/contracts/pensions";
 
-            CSASPensions resp = gson.fromJson(line, CSASPensions.class);
+            CSASPensions resp = DoNetbankingRequest(identity, url, CSASEndpoint.CONTRACTS, CSASPensions.class);
             if (resp.getPensions() != null) {
                 for (CSASAgreement agreement : resp.getPensions()) {
                     String id = agreement.getId();
                     String number = agreement.getAgreementNumber();
-                    if (!accountList.containsKey(id))
-                        accountList.put(id, "Pension agreement: " + number);
+                    identity.getAccounts().putIfAbsent(id, "Pension agreement: " + number);
                 }
             }
         } catch (MalformedURLException e) {
@@ -669,20 +1454,17 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         }
     }
 
-    private void getBuildingSavings() {
+    private void getBuildingSavings(CSASIdentity identity) {
 
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "my/contracts/buildings";
+            url = configuration.getApiUrl() + "my/contracts/buildings";
 
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getBuildingSavings: " + line);
-
-            CSASBuildingsResponse resp = gson.fromJson(line, CSASBuildingsResponse.class);
+            CSASBuildingsResponse resp = DoNetbankingRequest(identity, url, CSASEndpoint.CONTRACTS, CSASBuildingsResponse.class);
             if (resp.getBuildings() != null) {
                 for (CSASAccount account : resp.getBuildings()) {
-                    readAccount(account.getId(), account.getAccountno());
+                    readAccount(identity, account.getId(), account.getAccountno());
                 }
             }
         } catch (MalformedURLException e) {
@@ -692,24 +1474,20 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         }
     }
 
-    private void getInsurances() {
+    private void getInsurances(CSASIdentity identity) {
 
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "my/contracts/insurances";
-
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getInsurances: " + line);
+            url = configuration.getApiUrl() + "my/contracts/insurances";
 
-            CSASInsurancesResponse resp = gson.fromJson(line, CSASInsurancesResponse.class);
+            CSASInsurancesResponse resp = DoNetbankingRequest(identity, url, CSASEndpoint.CONTRACTS, CSASInsurancesResponse.class);
             if (resp.getInsurances() != null) {
                 for (CSASInsurance insurance : resp.getInsurances()) {
                     String id = insurance.getId();
                     String policyNumber = insurance.getPolicyNumber();
                     String productI18N = insurance.getProductI18N();
-                    if (!accountList.containsKey(id))
-                        accountList.put(id, "Insurance: " + policyNumber + " (" + productI18N + ")");
+                    identity.getAccounts().putIfAbsent(id, "Insurance: " + policyNumber + " (" + productI18N + ")");
                 }
             }
         } catch (MalformedURLException e) {
@@ -719,49 +1497,45 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         }
     }
 
-    private void readAccount(String id, CSASAccountNumber account) {
+    private void readAccount(CSASIdentity identity, String id, CSASAccountNumber account) {
         if (account == null)
             return;
 
         String number = account.getNumber();
         String bankCode = account.getBankCode();
         String iban = account.getIban();
-        if (!accountList.containsKey(id)) {
-            accountList.put(id, "Account: " + number + "/" + bankCode);
-            ibanList.put(id, iban);
+        if (identity.getAccounts().putIfAbsent(id, "Account: " + number + "/" + bankCode) == null && iban != null) {
+            identity.getIbans().put(id, iban);
         }
     }
 
-    private void listUnboundAccounts() {
+    private void listUnboundAccounts(CSASIdentity identity) {
         StringBuilder sb = new StringBuilder();
-        Iterator it = accountList.entrySet().iterator();
+        Iterator it = identity.getAccounts().entrySet().iterator();
         while (it.hasNext()) {
             Map.Entry pair = (Map.Entry) it.next();
-            String id = (String) pair.getKey();
+            String id = identity.getAccountKey((String) pair.getKey());
             String acc = (String) pair.getValue();
             if (!isBound(id))
                 sb.append("\t").append(acc).append(" Id: ").append(id).append("\n");
         }
         if (sb.length() > 0) {
-            logger.info("Found unbound CSAS account(s): \n" + sb.toString());
+            logger.info("Found unbound CSAS account(s) of identity " + identity + ": \n" + sb.toString());
         }
     }
 
 
-    private void getAccounts() {
+    private void getAccounts(CSASIdentity identity) {
 
         String url = null;
 
         try {
-            url = NETBANKING_V3 + "my/accounts";
-
-            String line = DoNetbankingRequest(url);
-            logger.debug("CSAS getAccounts: " + line);
+            url = configuration.getApiUrl() + "my/accounts";
 
-            CSASAccountsResponse resp = gson.fromJson(line, CSASAccountsResponse.class);
+            CSASAccountsResponse resp = DoNetbankingRequest(identity, url, CSASEndpoint.ACCOUNTS, CSASAccountsResponse.class);
             if (resp.getAccounts() != null) {
                 for (CSASAccount account : resp.getAccounts()) {
-                    readAccount(account.getId(), account.getAccountno());
+                    readAccount(identity, account.getId(), account.getAccountno());
                 }
             }
         } catch (MalformedURLException e) {
@@ -771,14 +1545,14 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         }
     }
 
+    /**
+     * @param id account id qualified by the identity name
+     */
     private boolean isBound(String id) {
 
         for (final CSASBindingProvider provider : providers) {
-            for (final String name : provider.getItemNames()) {
-                String type = provider.getItemId(name);
-                if (type.equals(id))
-                    return true;
-            }
+            if (provider.getAccountBindings(id) != null)
+                return true;
         }
         return false;
     }
@@ -805,4 +1579,18 @@ public class CSASBinding extends AbstractActiveBinding<CSASBindingProvider> {
         logger.debug("internalReceiveUpdate({},{}) is called!", itemName, newState);
     }
 
+    /**
+     * State of one refresh cycle handed over from stage to stage.
+     */
+    private static class RefreshCycle {
+        //identities holding a valid access token
+        private final Set<CSASIdentity> ready = new LinkedHashSet<>();
+        private CSASRefreshPlan plan;
+        private long now;
+        private final List<CSASRefreshPlan.AccountPlan> dueAccounts = new ArrayList<>();
+        private final Map<String, CSASAccountBalanceResponse> balances = new ConcurrentHashMap<>();
+        private final Map<String, CSASLoyaltyResponse> loyalty = new ConcurrentHashMap<>();
+        private final Map<String, ArrayList<CSASSimpleTransaction>> reservations = new ConcurrentHashMap<>();
+        private final Map<String, List<CSASSimpleTransaction>> transactions = new ConcurrentHashMap<>();
+    }
 }
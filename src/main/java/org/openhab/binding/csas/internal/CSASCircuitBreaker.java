@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker of one endpoint family. After the given number of consecutive
+ * failures the breaker opens and requests fail fast until the open timeout elapses.
+ * Then a single trial request is let through, its result closes the breaker again
+ * or keeps it open for another timeout.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASCircuitBreaker {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASCircuitBreaker.class);
+
+    private final String name;
+    private int failureThreshold = 3;
+    private long openTimeout = 300000;
+
+    private int failures = 0;
+    private long openedAt = 0;
+    private boolean trialRunning = false;
+
+    public CSASCircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    public synchronized void configure(int failureThreshold, long openTimeout) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openTimeout = openTimeout;
+    }
+
+    /**
+     * @return true if a request may be sent, false if it has to fail fast
+     */
+    public synchronized boolean allowRequest() {
+        if (failures < failureThreshold) {
+            return true;
+        }
+        if (!trialRunning && System.currentTimeMillis() - openedAt >= openTimeout) {
+            trialRunning = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void success() {
+        if (failures >= failureThreshold) {
+            logger.info("CSAS {} endpoint is available again", name);
+        }
+        failures = 0;
+        trialRunning = false;
+    }
+
+    public synchronized void failure() {
+        failures++;
+        if (failures == failureThreshold || trialRunning) {
+            logger.warn("CSAS {} endpoint is failing, requests suspended for {} s", name, openTimeout / 1000);
+            openedAt = System.currentTimeMillis();
+        }
+        trialRunning = false;
+    }
+
+    /**
+     * Releases the trial request without a verdict, e.g. when it was not sent at all.
+     */
+    public synchronized void cancel() {
+        trialRunning = false;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the validators (ETag, Last-Modified) of the netbanking responses together with
+ * their parsed model objects. The validators are sent with the next request of the same
+ * URL and a 304 response reuses the parsed object without transferring and parsing it again.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASConditionalCache {
+
+    private static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final Object value;
+
+        private Entry(String etag, String lastModified, Object value) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the conditional headers of the cached response of the URL, if there is one.
+     */
+    public void addValidators(String url, Map<String, String> headers) {
+        Entry entry = entries.get(url);
+        if (entry == null)
+            return;
+
+        if (entry.etag != null)
+            headers.put("If-None-Match", entry.etag);
+        if (entry.lastModified != null)
+            headers.put("If-Modified-Since", entry.lastModified);
+    }
+
+    /**
+     * @return the parsed object of the cached response of the URL or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String url) {
+        Entry entry = entries.get(url);
+        return (entry != null) ? (T) entry.value : null;
+    }
+
+    /**
+     * Stores the parsed object of a response, responses without validators are forgotten.
+     */
+    public void put(String url, CSASHttpResponse response, Object value) {
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        if (value == null || (etag == null && lastModified == null)) {
+            entries.remove(url);
+        } else {
+            entries.put(url, new Entry(etag, lastModified, value));
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
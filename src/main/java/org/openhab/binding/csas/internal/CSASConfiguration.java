@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the binding configuration. It is parsed on the ConfigAdmin thread and handed
+ * over to the refresh cycle, which applies it before its first request. It is never modified
+ * once parsed, so the fetch threads can read it without locking.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASConfiguration {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASConfiguration.class);
+
+    //Constants
+    final private static String DEFAULT_API_URL = "https://www.csas.cz/webapi/api/v3/netbanking/";
+    final private static List<String> IDENTITY_PROPERTIES = Arrays.asList("clientId", "clientSecret", "refreshToken");
+
+    /**
+     * the refresh interval which is used to poll values from the CSAS
+     * server (optional, defaults to 1800000ms)
+     */
+    private long refreshInterval = 1800000;
+    private String clientId = "";
+    private String clientSecret = "";
+    private String refreshToken = "";
+    private String webAPIKey = "";
+    private int historyInterval = 14;
+    private int fetchThreads = 1;
+    private int connectTimeout = 10000;
+    private int readTimeout = 30000;
+    private boolean incrementalSync = false;
+    private String journalDirectory = "";
+    private int pageSize = 25;
+    private boolean adaptive = false;
+    private long minRefreshInterval = 300000;
+    private long maxRefreshInterval = 14400000;
+    private int activeFrom = 0;
+    private int activeTo = 24;
+    private int rateLimit = 0;
+    private int rateBurst = 5;
+    private int maxRetries = 2;
+    private String apiUrl = DEFAULT_API_URL;
+    private String tokenUrl = CSASTokenManager.DEFAULT_TOKEN_URL;
+    private int breakerThreshold = 3;
+    private long breakerTimeout = 300000;
+    private long debounce = 0;
+
+    //Named identities, <name>.<property> -> value
+    private Map<String, Map<String, String>> namedIdentities = Collections.emptyMap();
+
+    private CSASConfiguration() {
+    }
+
+    /**
+     * @return the configuration with all values at their defaults
+     */
+    public static CSASConfiguration getDefault() {
+        return new CSASConfiguration();
+    }
+
+    /**
+     * Parses the configuration properties, the missing ones keep their defaults.
+     *
+     * @throws NumberFormatException if a numeric property is malformed
+     */
+    public static CSASConfiguration parse(final Map<String, Object> configuration) {
+        CSASConfiguration config = new CSASConfiguration();
+        if (configuration == null)
+            return config;
+
+        Map<String, Map<String, String>> namedIdentities = new HashMap<>();
+        for (Map.Entry<String, Object> entry : configuration.entrySet()) {
+            String key = entry.getKey();
+            int dot = key.indexOf('.');
+            if (dot > 0 && entry.getValue() instanceof String && StringUtils.isNotBlank((String) entry.getValue())
+                    && IDENTITY_PROPERTIES.contains(key.substring(dot + 1))) {
+                namedIdentities.computeIfAbsent(key.substring(0, dot), name -> new HashMap<>())
+                        .put(key.substring(dot + 1), (String) entry.getValue());
+            }
+        }
+        config.namedIdentities = Collections.unmodifiableMap(namedIdentities);
+
+        String refreshIntervalString = (String) configuration.get("refresh");
+        if (StringUtils.isNotBlank(refreshIntervalString)) {
+            config.refreshInterval = Long.parseLong(refreshIntervalString);
+        }
+
+        String historyIntervalString = (String) configuration.get("history");
+        if (StringUtils.isNotBlank(historyIntervalString)) {
+            config.historyInterval = Math.min(60, Integer.parseInt(historyIntervalString));
+        }
+
+        String incrementalString = (String) configuration.get("incremental");
+        if (StringUtils.isNotBlank(incrementalString)) {
+            config.incrementalSync = Boolean.parseBoolean(incrementalString);
+        }
+
+        String journalString = (String) configuration.get("journal");
+        if (StringUtils.isNotBlank(journalString)) {
+            config.journalDirectory = journalString;
+        }
+
+        String pageSizeString = (String) configuration.get("pageSize");
+        if (StringUtils.isNotBlank(pageSizeString)) {
+            config.pageSize = Integer.parseInt(pageSizeString);
+            if (config.pageSize < 0) {
+                logger.error("Invalid CSAS page size: " + pageSizeString + ", transactions are not paged");
+                config.pageSize = 0;
+            }
+        }
+
+        String adaptiveString = (String) configuration.get("adaptive");
+        if (StringUtils.isNotBlank(adaptiveString)) {
+            config.adaptive = Boolean.parseBoolean(adaptiveString);
+        }
+
+        String minRefreshString = (String) configuration.get("minRefresh");
+        if (StringUtils.isNotBlank(minRefreshString)) {
+            config.minRefreshInterval = Long.parseLong(minRefreshString);
+        }
+
+        String maxRefreshString = (String) configuration.get("maxRefresh");
+        if (StringUtils.isNotBlank(maxRefreshString)) {
+            config.maxRefreshInterval = Long.parseLong(maxRefreshString);
+        }
+
+        if (config.minRefreshInterval > config.maxRefreshInterval) {
+            logger.error("CSAS minRefresh " + config.minRefreshInterval + " exceeds maxRefresh " + config.maxRefreshInterval + ", maxRefresh set to minRefresh");
+            config.maxRefreshInterval = config.minRefreshInterval;
+        }
+
+        String activeHoursString = (String) configuration.get("activeHours");
+        if (StringUtils.isNotBlank(activeHoursString)) {
+            String[] hours = activeHoursString.split("-");
+            int from = hours.length == 2 ? Integer.parseInt(hours[0].trim()) : -1;
+            int to = hours.length == 2 ? Integer.parseInt(hours[1].trim()) : -1;
+            if (from >= 0 && from <= 24 && to >= 0 && to <= 24) {
+                config.activeFrom = from;
+                config.activeTo = to;
+            } else {
+                logger.error("Invalid CSAS active hours: " + activeHoursString);
+            }
+        }
+
+        String rateLimitString = (String) configuration.get("rateLimit");
+        if (StringUtils.isNotBlank(rateLimitString)) {
+            config.rateLimit = Integer.parseInt(rateLimitString);
+        }
+
+        String rateBurstString = (String) configuration.get("rateBurst");
+        if (StringUtils.isNotBlank(rateBurstString)) {
+            config.rateBurst = Integer.parseInt(rateBurstString);
+        }
+
+        String retriesString = (String) configuration.get("retries");
+        if (StringUtils.isNotBlank(retriesString)) {
+            config.maxRetries = Integer.parseInt(retriesString);
+            if (config.maxRetries < 0) {
+                logger.error("Invalid CSAS retries: " + retriesString + ", requests are not retried");
+                config.maxRetries = 0;
+            }
+        }
+
+        String breakerThresholdString = (String) configuration.get("breakerThreshold");
+        if (StringUtils.isNotBlank(breakerThresholdString)) {
+            config.breakerThreshold = Integer.parseInt(breakerThresholdString);
+            if (config.breakerThreshold < 1) {
+                logger.error("Invalid CSAS breaker threshold: " + breakerThresholdString + ", using 1");
+                config.breakerThreshold = 1;
+            }
+        }
+
+        String breakerTimeoutString = (String) configuration.get("breakerTimeout");
+        if (StringUtils.isNotBlank(breakerTimeoutString)) {
+            config.breakerTimeout = Long.parseLong(breakerTimeoutString);
+        }
+
+        String debounceString = (String) configuration.get("debounce");
+        if (StringUtils.isNotBlank(debounceString)) {
+            config.debounce = Long.parseLong(debounceString);
+        }
+
+        String apiUrlString = (String) configuration.get("apiUrl");
+        if (StringUtils.isNotBlank(apiUrlString)) {
+            config.apiUrl = apiUrlString.endsWith("/") ? apiUrlString : apiUrlString + "/";
+        }
+
+        String tokenUrlString = (String) configuration.get("tokenUrl");
+        if (StringUtils.isNotBlank(tokenUrlString)) {
+            config.tokenUrl = tokenUrlString;
+        }
+
+        String threadsString = (String) configuration.get("threads");
+        if (StringUtils.isNotBlank(threadsString)) {
+            config.fetchThreads = Math.max(1, Integer.parseInt(threadsString));
+        }
+
+        String connectTimeoutString = (String) configuration.get("connectTimeout");
+        if (StringUtils.isNotBlank(connectTimeoutString)) {
+            config.connectTimeout = Integer.parseInt(connectTimeoutString);
+        }
+
+        String readTimeoutString = (String) configuration.get("readTimeout");
+        if (StringUtils.isNotBlank(readTimeoutString)) {
+            config.readTimeout = Integer.parseInt(readTimeoutString);
+        }
+
+        String clientIdString = (String) configuration.get("clientId");
+        if (StringUtils.isNotBlank(clientIdString)) {
+            config.clientId = clientIdString;
+        }
+
+        String clientSecretString = (String) configuration.get("clientSecret");
+        if (StringUtils.isNotBlank(clientSecretString)) {
+            config.clientSecret = clientSecretString;
+        }
+
+        String refreshTokenString = (String) configuration.get("refreshToken");
+        if (StringUtils.isNotBlank(refreshTokenString)) {
+            config.refreshToken = refreshTokenString;
+        }
+
+        String webAPIKeyString = (String) configuration.get("webAPIKey");
+        if (StringUtils.isNotBlank(webAPIKeyString)) {
+            config.webAPIKey = webAPIKeyString;
+        }
+        return config;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getClientSecret() {
+        return clientSecret;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public String getWebAPIKey() {
+        return webAPIKey;
+    }
+
+    public int getHistoryInterval() {
+        return historyInterval;
+    }
+
+    public int getFetchThreads() {
+        return fetchThreads;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public boolean isIncrementalSync() {
+        return incrementalSync;
+    }
+
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public long getMinRefreshInterval() {
+        return minRefreshInterval;
+    }
+
+    public long getMaxRefreshInterval() {
+        return maxRefreshInterval;
+    }
+
+    public int getActiveFrom() {
+        return activeFrom;
+    }
+
+    public int getActiveTo() {
+        return activeTo;
+    }
+
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public int getRateBurst() {
+        return rateBurst;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public String getTokenUrl() {
+        return tokenUrl;
+    }
+
+    public int getBreakerThreshold() {
+        return breakerThreshold;
+    }
+
+    public long getBreakerTimeout() {
+        return breakerTimeout;
+    }
+
+    public long getDebounce() {
+        return debounce;
+    }
+
+    /**
+     * @return properties of the named identities by their names
+     */
+    public Map<String, Map<String, String>> getNamedIdentities() {
+        return namedIdentities;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+/**
+ * Families of the netbanking endpoints. Every family has its own circuit breaker,
+ * the priority its requests get from the rate limiter and tells whether its slowly
+ * changing responses are revalidated by conditional requests.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public enum CSASEndpoint {
+    BALANCE(CSASRequestPriority.BALANCE, false),
+    LOYALTY(CSASRequestPriority.BALANCE, true),
+    ACCOUNTS(CSASRequestPriority.DISCOVERY, true),
+    CARDS(CSASRequestPriority.DISCOVERY, true),
+    CONTRACTS(CSASRequestPriority.DISCOVERY, true),
+    SECURITIES(CSASRequestPriority.DISCOVERY, true),
+    RESERVATIONS(CSASRequestPriority.RESERVATIONS, false),
+    TRANSACTIONS(CSASRequestPriority.TRANSACTIONS, false);
+
+    private final CSASRequestPriority priority;
+    private final boolean conditional;
+
+    CSASEndpoint(CSASRequestPriority priority, boolean conditional) {
+        this.priority = priority;
+        this.conditional = conditional;
+    }
+
+    public CSASRequestPriority getPriority() {
+        return priority;
+    }
+
+    public boolean isConditional() {
+        return conditional;
+    }
+}
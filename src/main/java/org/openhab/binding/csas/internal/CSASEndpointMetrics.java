@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histogram of the calls of one endpoint.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASEndpointMetrics {
+
+    //Upper bounds of the latency histogram buckets in milliseconds, the last bucket is unbounded
+    private static final long[] LATENCY_BUCKETS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong latency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final AtomicLong parseTime = new AtomicLong();
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+
+    /**
+     * Records a call answered by the server.
+     *
+     * @param millis time until the response headers were received
+     */
+    public void requested(long millis) {
+        requests.incrementAndGet();
+        latency.addAndGet(millis);
+        long max;
+        while (millis > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, millis)) {
+            //retry
+        }
+
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket])
+            bucket++;
+        histogram.incrementAndGet(bucket);
+    }
+
+    public void parsed(long millis, long bytes) {
+        parsed.incrementAndGet();
+        parseTime.addAndGet(millis);
+        this.bytes.addAndGet(bytes);
+    }
+
+    public void failed() {
+        errors.incrementAndGet();
+    }
+
+    public void notModified() {
+        notModified.incrementAndGet();
+    }
+
+    public void cacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    /**
+     * Zeroes the counters, the metrics stay shared with their users.
+     */
+    public void reset() {
+        requests.set(0);
+        errors.set(0);
+        notModified.set(0);
+        cacheHits.set(0);
+        bytes.set(0);
+        latency.set(0);
+        maxLatency.set(0);
+        parseTime.set(0);
+        parsed.set(0);
+        for (int i = 0; i < histogram.length(); i++)
+            histogram.set(i, 0);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * @return the number of calls answered by an earlier response of the same refresh cycle
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getMeanLatency() {
+        long count = requests.get();
+        return count > 0 ? latency.get() / count : 0;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    public long getMeanParseTime() {
+        long count = parsed.get();
+        return count > 0 ? parseTime.get() / count : 0;
+    }
+
+    /**
+     * @return the number of calls per latency bucket, keyed by the upper bound of the bucket
+     */
+    public Map<String, Long> getLatencyHistogram() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            result.put("<=" + LATENCY_BUCKETS[i] + "ms", histogram.get(i));
+        }
+        result.put(">" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms", histogram.get(LATENCY_BUCKETS.length));
+        return result;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder event type of a refresh cycle phase. The type is defined at runtime
+ * through <code>jdk.jfr.EventFactory</code> and used by reflection only, so the bundle does
+ * not depend on JFR classes and keeps running on Java 8 VMs without them.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+final class CSASFlightRecorder {
+
+    //Field indexes of the events
+    private static final int ACCOUNT_ID = 0;
+    private static final int NAME = 1;
+    private static final int BYTES = 2;
+    private static final int RECORDS = 3;
+
+    private final Object factory;
+    private final Object eventType;
+    private final Method isEnabled;
+    private final Method newEvent;
+    private final Method begin;
+    private final Method end;
+    private final Method shouldCommit;
+    private final Method commit;
+    private final Method set;
+
+    private CSASFlightRecorder(Object factory) throws ReflectiveOperationException {
+        Class<?> eventClass = loadClass("jdk.jfr.Event");
+        this.factory = factory;
+        this.eventType = factory.getClass().getMethod("getEventType").invoke(factory);
+        this.isEnabled = eventType.getClass().getMethod("isEnabled");
+        this.newEvent = factory.getClass().getMethod("newEvent");
+        this.begin = eventClass.getMethod("begin");
+        this.end = eventClass.getMethod("end");
+        this.shouldCommit = eventClass.getMethod("shouldCommit");
+        this.commit = eventClass.getMethod("commit");
+        this.set = eventClass.getMethod("set", int.class, Object.class);
+    }
+
+    /**
+     * Defines the event type in the openHAB/CSAS category.
+     *
+     * @param name  name of the event type, e.g. org.openhab.binding.csas.Fetch
+     * @param label human readable name of the event type
+     * @throws ReflectiveOperationException if the JVM does not provide JFR
+     */
+    static CSASFlightRecorder define(String name, String label) throws ReflectiveOperationException {
+        Class<?> annotationClass = loadClass("jdk.jfr.AnnotationElement");
+        Class<?> valueClass = loadClass("jdk.jfr.ValueDescriptor");
+        Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+        Constructor<?> value = valueClass.getConstructor(Class.class, String.class, List.class);
+
+        List<Object> annotations = Arrays.asList(
+                annotation.newInstance(loadClass("jdk.jfr.Name"), name),
+                annotation.newInstance(loadClass("jdk.jfr.Label"), label),
+                annotation.newInstance(loadClass("jdk.jfr.Category"), new String[]{"openHAB", "CSAS"}));
+        List<Object> fields = Arrays.asList(
+                value.newInstance(String.class, "accountId", Collections.singletonList(
+                        annotation.newInstance(loadClass("jdk.jfr.Label"), "Account Id"))),
+                value.newInstance(String.class, "name", Arrays.asList(
+                        annotation.newInstance(loadClass("jdk.jfr.Label"), "Name"),
+                        annotation.newInstance(loadClass("jdk.jfr.Description"), "Endpoint, product or item the event relates to"))),
+                value.newInstance(long.class, "bytes", Arrays.asList(
+                        annotation.newInstance(loadClass("jdk.jfr.Label"), "Bytes"),
+                        annotation.newInstance(loadClass("jdk.jfr.DataAmount"), "BYTES"))),
+                value.newInstance(int.class, "records", Collections.singletonList(
+                        annotation.newInstance(loadClass("jdk.jfr.Label"), "Records"))));
+
+        Method create = loadClass("jdk.jfr.EventFactory").getMethod("create", List.class, List.class);
+        return new CSASFlightRecorder(create.invoke(null, annotations, fields));
+    }
+
+    private static Class<?> loadClass(String name) throws ClassNotFoundException {
+        return Class.forName(name, true, CSASFlightRecorder.class.getClassLoader());
+    }
+
+    /**
+     * Begins a new event of this type. No event is created unless a recording is running
+     * with the type enabled.
+     *
+     * @param currentAccount the thread local account id to remove at the end, may be null
+     */
+    CSASTraceSpan begin(String accountId, String name, ThreadLocal<String> currentAccount) {
+        try {
+            if (!(Boolean) isEnabled.invoke(eventType))
+                return currentAccount != null ? new Cleanup(currentAccount) : CSASTraceSpan.NONE;
+
+            Object event = newEvent.invoke(factory);
+            set.invoke(event, ACCOUNT_ID, accountId);
+            set.invoke(event, NAME, name);
+            begin.invoke(event);
+            return new Span(event, currentAccount);
+        } catch (ReflectiveOperationException e) {
+            return CSASTraceSpan.NONE;
+        }
+    }
+
+    /**
+     * Span of a disabled event, it only removes the thread local account id.
+     */
+    private static class Cleanup extends CSASTraceSpan {
+        private final ThreadLocal<String> currentAccount;
+
+        private Cleanup(ThreadLocal<String> currentAccount) {
+            this.currentAccount = currentAccount;
+        }
+
+        @Override
+        public void end() {
+            currentAccount.remove();
+        }
+    }
+
+    private class Span extends CSASTraceSpan {
+        private final Object event;
+        private final ThreadLocal<String> currentAccount;
+        private long bytes;
+        private int records;
+
+        private Span(Object event, ThreadLocal<String> currentAccount) {
+            this.event = event;
+            this.currentAccount = currentAccount;
+        }
+
+        @Override
+        public CSASTraceSpan setBytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public CSASTraceSpan setRecords(int records) {
+            this.records = records;
+            return this;
+        }
+
+        @Override
+        public void end() {
+            if (currentAccount != null)
+                currentAccount.remove();
+            try {
+                end.invoke(event);
+                if ((Boolean) shouldCommit.invoke(event)) {
+                    set.invoke(event, BYTES, bytes);
+                    set.invoke(event, RECORDS, records);
+                    commit.invoke(event);
+                }
+            } catch (ReflectiveOperationException e) {
+                //tracing must never break the refresh cycle
+            }
+        }
+    }
+}
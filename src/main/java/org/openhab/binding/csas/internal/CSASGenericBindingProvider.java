@@ -11,10 +11,13 @@ package org.openhab.binding.csas.internal;
 import org.openhab.binding.csas.CSASBindingProvider;
 import org.openhab.core.binding.BindingConfig;
 import org.openhab.core.items.Item;
+import org.openhab.core.library.items.NumberItem;
 import org.openhab.core.library.items.StringItem;
 import org.openhab.model.item.binding.AbstractGenericBindingProvider;
 import org.openhab.model.item.binding.BindingConfigParseException;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is responsible for parsing the binding configuration.
@@ -24,6 +27,12 @@ import org.openhab.model.item.binding.BindingConfigParseException;
  */
 public class CSASGenericBindingProvider extends AbstractGenericBindingProvider implements CSASBindingProvider {
 
+    //Reverse index account key -> item name -> config, guarded by itself
+    private final Map<String, Map<String, CSASBindingConfig>> accountItems = new HashMap<>();
+
+    //Summaries of the account bindings, rebuilt for an account whenever its items change
+    private final Map<String, CSASAccountBindings> accountBindings = new ConcurrentHashMap<>();
+
     /**
      * {@inheritDoc}
      */
@@ -36,10 +45,10 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
      */
     @Override
     public void validateItemType(Item item, String bindingConfig) throws BindingConfigParseException {
-        if (!(item instanceof StringItem)) {
+        if (!(item instanceof StringItem) && !(item instanceof NumberItem)) {
             throw new BindingConfigParseException("item '" + item.getName()
                     + "' is of type '" + item.getClass().getSimpleName()
-                    + "', only StringItems are allowed - please check your *.items configuration");
+                    + "', only String- and NumberItems are allowed - please check your *.items configuration");
         }
     }
 
@@ -50,6 +59,15 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
     public void processBindingConfiguration(String context, Item item, String bindingConfig) throws BindingConfigParseException {
         super.processBindingConfiguration(context, item, bindingConfig);
 
+        //accounts of a named identity are bound as identity:accountId
+        String identity = CSASIdentity.DEFAULT;
+        int colon = bindingConfig.indexOf(':');
+        int hash = bindingConfig.indexOf('#');
+        if (colon > 0 && (hash < 0 || colon < hash)) {
+            identity = bindingConfig.substring(0, colon);
+            bindingConfig = bindingConfig.substring(colon + 1);
+        }
+
         String id = bindingConfig;
         if (id.contains("#")) {
             int pos = id.indexOf('#');
@@ -57,7 +75,26 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
         }
         CSASBindingConfig config;
 
-        if (bindingConfig.endsWith("#disposable") || id.equals(bindingConfig)) {
+        if (id.equals(CSASMetrics.METRICS_ID)) {
+            if (id.equals(bindingConfig)) {
+                throw new BindingConfigParseException("item '" + item.getName()
+                        + "' has no metric name - please check your *.items configuration");
+            }
+            config = new CSASBindingConfig(id, CSASItemType.METRIC);
+            config.setMetric(bindingConfig.substring(id.length() + 1));
+        } else if (bindingConfig.indexOf(':', id.length()) > 0) {
+            //rolling aggregate, e.g. id#sum:7d
+            String aggregate = bindingConfig.substring(id.length() + 1);
+            int pos = aggregate.indexOf(':');
+            CSASItemType type = getAggregateType(aggregate.substring(0, pos));
+            String window = aggregate.substring(pos + 1);
+            if (type == null || !CSASSpendingAggregates.isValidWindow(window)) {
+                throw new BindingConfigParseException("item '" + item.getName()
+                        + "' has an invalid aggregate '" + aggregate + "' - please check your *.items configuration");
+            }
+            config = new CSASBindingConfig(id, type);
+            config.setWindow(window);
+        } else if (bindingConfig.endsWith("#disposable") || id.equals(bindingConfig)) {
             config = new CSASBindingConfig(id, bindingConfig.endsWith("#disposable") ? CSASItemType.DISPOSABLE_BALANCE : CSASItemType.BALANCE);
         } else {
 
@@ -83,9 +120,102 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
             else
                 config = new CSASBindingConfig(id, CSASItemType.TRANSACTION_BALANCE, Integer.parseInt(bindingConfig.replace(id + "#", "")));
         }
+        if (item instanceof NumberItem) {
+            if (config.getItemType() != CSASItemType.BALANCE && config.getItemType() != CSASItemType.DISPOSABLE_BALANCE
+                    && config.getItemType() != CSASItemType.TRANSACTION_BALANCE && config.getItemType() != CSASItemType.METRIC
+                    && !config.getItemType().isAggregate()) {
+                throw new BindingConfigParseException("item '" + item.getName()
+                        + "' is a NumberItem, only balances, transaction amounts, aggregates and metrics can be bound to NumberItems - please check your *.items configuration");
+            }
+            config.setNumeric(true);
+        }
+        config.setIdentity(identity);
+
+        //the index has to be updated before the listeners get notified
+        indexBindingConfig(item.getName(), config);
         addBindingConfig(item, config);
     }
 
+    private CSASItemType getAggregateType(String name) {
+        switch (name) {
+            case "sum":
+                return CSASItemType.AGGREGATE_SUM;
+            case "debits":
+                return CSASItemType.AGGREGATE_DEBITS;
+            case "credits":
+                return CSASItemType.AGGREGATE_CREDITS;
+            case "count":
+                return CSASItemType.AGGREGATE_COUNT;
+            case "max":
+                return CSASItemType.AGGREGATE_MAX;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeConfigurations(String context) {
+        Set<Item> items = contextMap.get(context);
+        if (items != null) {
+            for (Item item : new ArrayList<>(items)) {
+                indexBindingConfig(item.getName(), null);
+            }
+        }
+        super.removeConfigurations(context);
+    }
+
+    private void indexBindingConfig(String itemName, CSASBindingConfig config) {
+        synchronized (accountItems) {
+            final CSASBindingConfig oldConfig = (CSASBindingConfig) this.bindingConfigs.get(itemName);
+            if (oldConfig != null) {
+                Map<String, CSASBindingConfig> items = accountItems.get(oldConfig.getAccountKey());
+                if (items != null) {
+                    items.remove(itemName);
+                    updateAccountBindings(oldConfig.getAccountKey(), items);
+                }
+            }
+            if (config != null) {
+                Map<String, CSASBindingConfig> items = accountItems.get(config.getAccountKey());
+                if (items == null) {
+                    items = new HashMap<>();
+                    accountItems.put(config.getAccountKey(), items);
+                }
+                items.put(itemName, config);
+                updateAccountBindings(config.getAccountKey(), items);
+            }
+        }
+    }
+
+    private void updateAccountBindings(String accountKey, Map<String, CSASBindingConfig> items) {
+        if (items.isEmpty()) {
+            accountItems.remove(accountKey);
+            accountBindings.remove(accountKey);
+            return;
+        }
+
+        EnumSet<CSASItemType> types = EnumSet.noneOf(CSASItemType.class);
+        int maxTransactionId = 0;
+        CSASBindingConfig any = null;
+        for (CSASBindingConfig config : items.values()) {
+            types.add(config.getItemType());
+            maxTransactionId = Math.max(maxTransactionId, config.getTransactionId());
+            any = config;
+        }
+        accountBindings.put(accountKey, new CSASAccountBindings(any.getIdentity(), any.getId(), new HashSet<>(items.keySet()), types, maxTransactionId));
+    }
+
+    public Set<String> getAccountIds() {
+        return Collections.unmodifiableSet(accountBindings.keySet());
+    }
+
+    public CSASAccountBindings getAccountBindings(String accountKey) {
+        return accountBindings.get(accountKey);
+    }
+
+    @Deprecated
     public String getItemId(String itemName) {
         final CSASBindingConfig config = (CSASBindingConfig) this.bindingConfigs.get(itemName);
         return config != null ? (config.getId()) : null;
@@ -98,7 +228,22 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
 
     public int getTransactionId(String itemName) {
         final CSASBindingConfig config = (CSASBindingConfig) this.bindingConfigs.get(itemName);
-        return config != null ? (config.getTransactionId()) : null;
+        return config != null ? (config.getTransactionId()) : 0;
+    }
+
+    public boolean isNumeric(String itemName) {
+        final CSASBindingConfig config = (CSASBindingConfig) this.bindingConfigs.get(itemName);
+        return config != null && config.isNumeric();
+    }
+
+    public String getMetric(String itemName) {
+        final CSASBindingConfig config = (CSASBindingConfig) this.bindingConfigs.get(itemName);
+        return config != null ? (config.getMetric()) : null;
+    }
+
+    public String getWindow(String itemName) {
+        final CSASBindingConfig config = (CSASBindingConfig) this.bindingConfigs.get(itemName);
+        return config != null ? (config.getWindow()) : null;
     }
 
     /**
@@ -111,10 +256,17 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
         // put member fields here which holds the parsed values
 
         private String id;
+        private String identity = CSASIdentity.DEFAULT;
         private CSASItemType balanceType;
 
         private int transactionId;
 
+        private boolean numeric;
+
+        private String metric;
+
+        private String window;
+
         CSASBindingConfig(String id, CSASItemType balanceType) {
             this.id = id;
             this.balanceType = balanceType;
@@ -130,6 +282,21 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
             return id;
         }
 
+        public String getIdentity() {
+            return identity;
+        }
+
+        public void setIdentity(String identity) {
+            this.identity = identity;
+        }
+
+        /**
+         * @return the account id qualified by the identity name
+         */
+        public String getAccountKey() {
+            return CSASIdentity.getAccountKey(identity, id);
+        }
+
         public CSASItemType getItemType() {
             return balanceType;
         }
@@ -137,6 +304,30 @@ public class CSASGenericBindingProvider extends AbstractGenericBindingProvider i
         public int getTransactionId() {
             return transactionId;
         }
+
+        public boolean isNumeric() {
+            return numeric;
+        }
+
+        public void setNumeric(boolean numeric) {
+            this.numeric = numeric;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public void setMetric(String metric) {
+            this.metric = metric;
+        }
+
+        public String getWindow() {
+            return window;
+        }
+
+        public void setWindow(String window) {
+            this.window = window;
+        }
     }
 
 
@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the CSAS WebAPI answers with an unsuccessful HTTP status.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASHttpException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public CSASHttpException(int status, String url) {
+        this("Server returned HTTP response code: " + status + " for URL: " + url, status);
+    }
+
+    public CSASHttpException(String message, int status) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response returned by {@link CSASTransport}. Closing the response drains
+ * the remaining body, which keeps the connection reusable.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASHttpResponse implements Closeable {
+
+    private final int status;
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final InputStream body;
+
+    public CSASHttpResponse(int status, Map<String, String> headers, InputStream body) {
+        this.status = status;
+        this.headers.putAll(headers);
+        this.body = body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body == null)
+            return;
+
+        try {
+            byte[] buffer = new byte[4096];
+            while (body.read(buffer) >= 0) {
+                //drain the rest of the body
+            }
+        } finally {
+            body.close();
+        }
+    }
+}
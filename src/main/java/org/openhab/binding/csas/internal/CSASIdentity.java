@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One netbanking user the binding works for, with its own token, discovered products
+ * and conditional request cache. The identities share the transport, the rate limiter
+ * and the fetch threads of the binding. The default identity has an empty name.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASIdentity {
+
+    public static final String DEFAULT = "";
+
+    private final String name;
+    private final CSASTokenManager tokenManager;
+
+    //Validators and parsed objects of the slowly changing responses
+    private final CSASConditionalCache conditionalCache = new CSASConditionalCache();
+
+    //Discovered products, id -> description
+    private final Map<String, String> accounts = new ConcurrentHashMap<>();
+
+    //IBANs of the discovered accounts
+    private final Map<String, String> ibans = new ConcurrentHashMap<>();
+
+    private volatile boolean discovered = false;
+
+    public CSASIdentity(String name, CSASTransport transport, CSASEndpointMetrics tokenMetrics) {
+        this.name = name;
+        this.tokenManager = new CSASTokenManager(transport, tokenMetrics);
+    }
+
+    /**
+     * @return the key of the account in the item bindings, the account id qualified by the identity name
+     */
+    public static String getAccountKey(String identity, String accountId) {
+        return identity.isEmpty() ? accountId : identity + ":" + accountId;
+    }
+
+    public String getAccountKey(String accountId) {
+        return getAccountKey(name, accountId);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CSASTokenManager getTokenManager() {
+        return tokenManager;
+    }
+
+    public CSASConditionalCache getConditionalCache() {
+        return conditionalCache;
+    }
+
+    public Map<String, String> getAccounts() {
+        return accounts;
+    }
+
+    public Map<String, String> getIbans() {
+        return ibans;
+    }
+
+    public boolean isDiscovered() {
+        return discovered;
+    }
+
+    public void setDiscovered(boolean discovered) {
+        this.discovered = discovered;
+    }
+
+    public void clear() {
+        accounts.clear();
+        ibans.clear();
+        conditionalCache.clear();
+        tokenManager.clear();
+        discovered = false;
+    }
+
+    @Override
+    public String toString() {
+        return name.isEmpty() ? "default" : name;
+    }
+}
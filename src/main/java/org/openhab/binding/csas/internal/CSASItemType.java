@@ -10,5 +10,19 @@ public enum CSASItemType {
     TRANSACTION_PARTY,
     TRANSACTION_INFO,
     TRANSACTION_VS,
-    TRANSACTION_DESCRIPTION
+    TRANSACTION_DESCRIPTION,
+    METRIC,
+    AGGREGATE_SUM,
+    AGGREGATE_DEBITS,
+    AGGREGATE_CREDITS,
+    AGGREGATE_COUNT,
+    AGGREGATE_MAX;
+
+    /**
+     * @return true if the item gets a rolling aggregate of the transactions
+     */
+    public boolean isAggregate() {
+        return this == AGGREGATE_SUM || this == AGGREGATE_DEBITS || this == AGGREGATE_CREDITS
+                || this == AGGREGATE_COUNT || this == AGGREGATE_MAX;
+    }
 }
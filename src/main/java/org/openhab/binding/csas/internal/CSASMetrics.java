@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of the CSAS calls per endpoint and of the refresh cycles. They are exposed
+ * through JMX and can be bound to items with the {@value #METRICS_ID} id.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASMetrics implements CSASMetricsMXBean {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASMetrics.class);
+
+    public static final String OBJECT_NAME = "org.openhab.binding.csas:type=Metrics";
+    public static final String METRICS_ID = "metrics";
+    public static final String TOKEN = "token";
+
+    private final Map<String, CSASEndpointMetrics> endpoints;
+
+    //Totals at the start of the running cycle
+    private long cycleStart;
+    private long cycleStartRequests;
+    private long cycleStartBytes;
+
+    private volatile long cycles;
+    private volatile long lastCycleTime;
+    private volatile long lastCycleRequests;
+    private volatile long lastCycleBytes;
+    private volatile long lastCycleUpdates;
+
+    public CSASMetrics() {
+        Map<String, CSASEndpointMetrics> map = new LinkedHashMap<>();
+        map.put(TOKEN, new CSASEndpointMetrics());
+        for (CSASEndpoint endpoint : CSASEndpoint.values()) {
+            map.put(endpoint.name().toLowerCase(), new CSASEndpointMetrics());
+        }
+        endpoints = Collections.unmodifiableMap(map);
+    }
+
+    public CSASEndpointMetrics getEndpoint(CSASEndpoint endpoint) {
+        return endpoints.get(endpoint.name().toLowerCase());
+    }
+
+    public CSASEndpointMetrics getToken() {
+        return endpoints.get(TOKEN);
+    }
+
+    @Override
+    public Map<String, CSASEndpointMetrics> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public long getRequests() {
+        long sum = 0;
+        for (CSASEndpointMetrics metrics : endpoints.values())
+            sum += metrics.getRequests();
+        return sum;
+    }
+
+    @Override
+    public long getErrors() {
+        long sum = 0;
+        for (CSASEndpointMetrics metrics : endpoints.values())
+            sum += metrics.getErrors();
+        return sum;
+    }
+
+    @Override
+    public long getBytes() {
+        long sum = 0;
+        for (CSASEndpointMetrics metrics : endpoints.values())
+            sum += metrics.getBytes();
+        return sum;
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        long hits = 0;
+        long calls = 0;
+        for (CSASEndpointMetrics metrics : endpoints.values()) {
+            hits += metrics.getCacheHits() + metrics.getNotModified();
+            calls += metrics.getCacheHits() + metrics.getRequests();
+        }
+        return calls > 0 ? (double) hits / calls : 0;
+    }
+
+    @Override
+    public long getCycles() {
+        return cycles;
+    }
+
+    @Override
+    public long getLastCycleTime() {
+        return lastCycleTime;
+    }
+
+    @Override
+    public long getLastCycleRequests() {
+        return lastCycleRequests;
+    }
+
+    @Override
+    public long getLastCycleBytes() {
+        return lastCycleBytes;
+    }
+
+    @Override
+    public long getLastCycleUpdates() {
+        return lastCycleUpdates;
+    }
+
+    @Override
+    public synchronized void reset() {
+        //the endpoint metrics are held by their users, e.g. the token managers
+        for (CSASEndpointMetrics metrics : endpoints.values())
+            metrics.reset();
+        //the running cycle is measured from the reset
+        cycleStartRequests = getRequests();
+        cycleStartBytes = getBytes();
+        cycles = 0;
+        lastCycleTime = 0;
+        lastCycleRequests = 0;
+        lastCycleBytes = 0;
+        lastCycleUpdates = 0;
+    }
+
+    public synchronized void cycleStarted() {
+        cycleStart = System.currentTimeMillis();
+        cycleStartRequests = getRequests();
+        cycleStartBytes = getBytes();
+    }
+
+    public synchronized void cycleFinished(long updates) {
+        cycles++;
+        lastCycleTime = System.currentTimeMillis() - cycleStart;
+        lastCycleRequests = getRequests() - cycleStartRequests;
+        lastCycleBytes = getBytes() - cycleStartBytes;
+        lastCycleUpdates = updates;
+        logger.debug("CSAS refresh cycle took {} ms, {} request(s), {} byte(s), {} update(s)",
+                lastCycleTime, lastCycleRequests, lastCycleBytes, updates);
+    }
+
+    /**
+     * Returns the value of a metric bound to an item, either a total like "cycleTime" or
+     * "cacheHitRatio" or a value of an endpoint like "balance.latency".
+     *
+     * @return the value or null if there is no such metric
+     */
+    public Number getValue(String name) {
+        int pos = name.indexOf('.');
+        if (pos > 0) {
+            CSASEndpointMetrics metrics = endpoints.get(name.substring(0, pos));
+            if (metrics == null)
+                return null;
+
+            switch (name.substring(pos + 1)) {
+                case "requests":
+                    return metrics.getRequests();
+                case "errors":
+                    return metrics.getErrors();
+                case "bytes":
+                    return metrics.getBytes();
+                case "latency":
+                    return metrics.getMeanLatency();
+                case "maxLatency":
+                    return metrics.getMaxLatency();
+                case "parseTime":
+                    return metrics.getMeanParseTime();
+                case "notModified":
+                    return metrics.getNotModified();
+                case "cacheHits":
+                    return metrics.getCacheHits();
+                default:
+                    return null;
+            }
+        }
+
+        switch (name) {
+            case "requests":
+                return getRequests();
+            case "errors":
+                return getErrors();
+            case "bytes":
+                return getBytes();
+            case "cacheHitRatio":
+                return getCacheHitRatio();
+            case "cycles":
+                return getCycles();
+            case "cycleTime":
+                return getLastCycleTime();
+            case "cycleRequests":
+                return getLastCycleRequests();
+            case "cycleBytes":
+                return getLastCycleBytes();
+            case "cycleUpdates":
+                return getLastCycleUpdates();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, a failure is only logged.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            logger.warn("Cannot register CSAS metrics MBean: " + e.toString());
+        }
+    }
+
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            logger.warn("Cannot unregister CSAS metrics MBean: " + e.toString());
+        }
+    }
+
+    /**
+     * Input stream counting the bytes read from the response body.
+     */
+    public static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
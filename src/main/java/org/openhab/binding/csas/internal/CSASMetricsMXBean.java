@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.Map;
+
+/**
+ * Management interface of the binding metrics, registered as
+ * {@value CSASMetrics#OBJECT_NAME}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public interface CSASMetricsMXBean {
+
+    Map<String, CSASEndpointMetrics> getEndpoints();
+
+    long getRequests();
+
+    long getErrors();
+
+    long getBytes();
+
+    /**
+     * @return share of the calls answered from the refresh cycle cache or by 304 Not Modified, 0 - 1
+     */
+    double getCacheHitRatio();
+
+    long getCycles();
+
+    long getLastCycleTime();
+
+    long getLastCycleRequests();
+
+    long getLastCycleBytes();
+
+    long getLastCycleUpdates();
+
+    void reset();
+}
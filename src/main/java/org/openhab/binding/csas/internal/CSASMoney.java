@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.openhab.binding.csas.internal.model.CSASAmount;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point amount in the minor units of its currency, parsed once from
+ * the {@link CSASAmount} of a response.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public final class CSASMoney {
+
+    //Formatting buffer of the calling thread
+    private static final ThreadLocal<StringBuilder> buffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(32);
+        }
+    };
+
+    private final long minorUnits;
+    private final int precision;
+    private final String currency;
+
+    public CSASMoney(long minorUnits, int precision, String currency) {
+        this.minorUnits = minorUnits;
+        this.precision = precision;
+        this.currency = currency;
+    }
+
+    /**
+     * @throws NumberFormatException if the amount has no valid value
+     */
+    public static CSASMoney valueOf(CSASAmount amount) {
+        if (amount == null || amount.getValue() == null)
+            throw new NumberFormatException("Missing amount value");
+
+        return new CSASMoney(Long.parseLong(amount.getValue()), amount.getPrecision(), amount.getCurrency());
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, precision);
+    }
+
+    /**
+     * Formats the amount for display, e.g. "12 345.67 CZK".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = buffer.get();
+        sb.setLength(0);
+        return appendTo(sb).toString();
+    }
+
+    public StringBuilder appendTo(StringBuilder sb) {
+        long units = Math.abs(minorUnits);
+        long scale = 1;
+        for (int i = 0; i < precision; i++)
+            scale *= 10;
+
+        if (minorUnits < 0)
+            sb.append('-');
+        appendGrouped(sb, units / scale);
+        sb.append('.');
+        if (precision == 0) {
+            sb.append("00");
+        } else {
+            long fraction = units % scale;
+            for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10)
+                sb.append('0');
+            sb.append(fraction);
+        }
+        if (currency != null)
+            sb.append(' ').append(currency);
+        return sb;
+    }
+
+    /**
+     * Appends the non-negative number with its thousands separated by spaces.
+     */
+    public static StringBuilder appendGrouped(StringBuilder sb, long value) {
+        int start = sb.length();
+        sb.append(value);
+        for (int i = sb.length() - 3; i > start; i -= 3)
+            sb.insert(i, ' ');
+        return sb;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof CSASMoney))
+            return false;
+
+        CSASMoney money = (CSASMoney) o;
+        return minorUnits == money.minorUnits && precision == money.precision
+                && (currency != null ? currency.equals(money.currency) : money.currency == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (minorUnits ^ (minorUnits >>> 32));
+        result = 31 * result + precision;
+        return 31 * result + (currency != null ? currency.hashCode() : 0);
+    }
+}
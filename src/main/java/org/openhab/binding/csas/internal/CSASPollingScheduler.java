@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides per account whether it is due in the current refresh cycle. Every account
+ * has its own polling interval: it is halved (down to the minimum) when the account's
+ * data have changed since the last poll and doubled (up to the maximum) when they have
+ * not. Outside the active hours the maximum interval applies.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASPollingScheduler {
+
+    private volatile boolean enabled = false;
+    private volatile long baseInterval = 1800000;
+    private volatile long minInterval = 300000;
+    private volatile long maxInterval = 14400000;
+    private volatile int activeFrom = 0;
+    private volatile int activeTo = 24;
+
+    private final Map<String, AccountState> accounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param enabled      false to poll every account in every cycle
+     * @param baseInterval initial interval of an account
+     * @param minInterval  shortest interval, this is also the refresh cycle interval
+     * @param maxInterval  longest interval
+     * @param activeFrom   hour the active hours start at
+     * @param activeTo     hour the active hours end at
+     */
+    public void configure(boolean enabled, long baseInterval, long minInterval, long maxInterval, int activeFrom, int activeTo) {
+        this.enabled = enabled;
+        this.minInterval = minInterval;
+        this.maxInterval = Math.max(minInterval, maxInterval);
+        this.baseInterval = Math.min(Math.max(baseInterval, this.minInterval), this.maxInterval);
+        this.activeFrom = activeFrom;
+        this.activeTo = activeTo;
+        accounts.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    public boolean isDue(String accountId, long now) {
+        if (!enabled) {
+            return true;
+        }
+        AccountState state = accounts.get(accountId);
+        //cycles are not exactly minInterval apart, so tolerate half of it
+        return state == null || now >= state.nextPoll - minInterval / 2;
+    }
+
+    /**
+     * Records a poll of the account and schedules the next one.
+     *
+     * @param fingerprint hash of the polled data
+     */
+    public void polled(String accountId, int fingerprint, long now) {
+        if (!enabled) {
+            return;
+        }
+        AccountState state = accounts.get(accountId);
+        if (state == null) {
+            state = new AccountState(baseInterval, fingerprint);
+            accounts.put(accountId, state);
+        } else if (state.fingerprint != fingerprint) {
+            state.interval = Math.max(minInterval, state.interval / 2);
+            state.fingerprint = fingerprint;
+        } else {
+            state.interval = Math.min(maxInterval, state.interval * 2);
+        }
+        state.nextPoll = now + (isActive(now) ? state.interval : maxInterval);
+    }
+
+    public void clear() {
+        accounts.clear();
+    }
+
+    private boolean isActive(long now) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        int hour = calendar.get(Calendar.HOUR_OF_DAY);
+        return (activeFrom <= activeTo) ? (hour >= activeFrom && hour < activeTo) : (hour >= activeFrom || hour < activeTo);
+    }
+
+    private static class AccountState {
+        private long interval;
+        private int fingerprint;
+        private long nextPoll;
+
+        AccountState(long interval, int fingerprint) {
+            this.interval = interval;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
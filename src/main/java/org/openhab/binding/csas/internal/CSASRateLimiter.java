@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Token bucket limiting the netbanking requests made with one WebAPI key. Waiting
+ * requests are served by their {@link CSASRequestPriority}, so balances are fetched
+ * before transaction details when the budget is tight. After a 429 response all
+ * requests are held back until the time given by the Retry-After header.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASRateLimiter {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASRateLimiter.class);
+
+    private static final long DEFAULT_RETRY_AFTER = 60000;
+
+    //Limiters shared by all users of the same WebAPI key
+    private static final Map<String, CSASRateLimiter> limiters = new HashMap<>();
+
+    private double capacity = 0;
+    private double refillPerMs = 0;
+    private double tokens = 0;
+    private long lastRefill = System.currentTimeMillis();
+    private long blockedUntil = 0;
+
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private long sequence = 0;
+
+    public static synchronized CSASRateLimiter forKey(String webAPIKey) {
+        CSASRateLimiter limiter = limiters.get(webAPIKey);
+        if (limiter == null) {
+            limiter = new CSASRateLimiter();
+            limiters.put(webAPIKey, limiter);
+        }
+        return limiter;
+    }
+
+    /**
+     * @param requestsPerMinute sustained request rate, 0 for no limit
+     * @param burst             number of requests which can be made at once
+     */
+    public synchronized void configure(int requestsPerMinute, int burst) {
+        capacity = requestsPerMinute > 0 ? Math.max(1, burst) : 0;
+        refillPerMs = requestsPerMinute / 60000.0;
+        tokens = capacity;
+        lastRefill = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    /**
+     * Waits for a token, requests with higher priority are served first.
+     *
+     * @param maxWait longest time to wait in milliseconds
+     * @throws CSASHttpException if no token can be obtained in time
+     */
+    public synchronized void acquire(CSASRequestPriority priority, long maxWait) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWait;
+        Waiter waiter = new Waiter(priority, sequence++);
+        waiters.add(waiter);
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                refill(now);
+
+                long wait;
+                if (now < blockedUntil) {
+                    wait = blockedUntil - now;
+                } else if (waiters.peek() != waiter) {
+                    wait = deadline - now;
+                } else if (capacity <= 0 || tokens >= 1) {
+                    if (capacity > 0) {
+                        tokens -= 1;
+                    }
+                    return;
+                } else {
+                    wait = (long) Math.ceil((1 - tokens) / refillPerMs);
+                }
+
+                if (now + wait > deadline || wait <= 0 && now >= deadline) {
+                    throw new CSASHttpException("CSAS WebAPI rate limit exceeded, " + priority + " request not sent", 429);
+                }
+                wait(Math.max(1, wait));
+            }
+        } finally {
+            waiters.remove(waiter);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Holds all requests back after the WebAPI has answered with 429.
+     *
+     * @param retryAfter value of the Retry-After header or null
+     * @return the time in milliseconds the requests are held back for
+     */
+    public synchronized long throttled(String retryAfter) {
+        long now = System.currentTimeMillis();
+        long delay = parseRetryAfter(retryAfter, now);
+        blockedUntil = Math.max(blockedUntil, now + delay);
+        tokens = 0;
+        logger.warn("CSAS WebAPI rate limit exceeded, requests held back for {} s", delay / 1000);
+        notifyAll();
+        return delay;
+    }
+
+    private void refill(long now) {
+        if (capacity > 0) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerMs);
+        }
+        lastRefill = now;
+    }
+
+    private long parseRetryAfter(String retryAfter, long now) {
+        if (retryAfter == null) {
+            return DEFAULT_RETRY_AFTER;
+        }
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                return Math.max(0, format.parse(retryAfter.trim()).getTime() - now);
+            } catch (Exception ex) {
+                return DEFAULT_RETRY_AFTER;
+            }
+        }
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+        private final CSASRequestPriority priority;
+        private final long sequence;
+
+        Waiter(CSASRequestPriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+/**
+ * Converts a single transaction or reservation record of a streamed response.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public interface CSASRecordConverter<T> {
+    CSASSimpleTransaction convert(T record) throws Exception;
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.ArrayList;
+
+/**
+ * One page of transaction or reservation records read from a paged response.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASRecordPage {
+    private final ArrayList<CSASSimpleTransaction> records = new ArrayList<>();
+    private int pageNumber = 0;
+    private int pageCount = 1;
+
+    public ArrayList<CSASSimpleTransaction> getRecords() {
+        return records;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public void setPageNumber(int pageNumber) {
+        this.pageNumber = pageNumber;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    public boolean hasNextPage() {
+        return pageNumber + 1 < pageCount;
+    }
+}
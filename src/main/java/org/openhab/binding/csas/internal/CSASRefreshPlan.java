@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.openhab.binding.csas.CSASBindingProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes the work of one refresh cycle: for every bound account the endpoints
+ * to call and the items their results are mapped to. The plan is compiled from the
+ * binding providers whenever the bindings change and reused by every cycle.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASRefreshPlan {
+
+    private final int version;
+    private final List<AccountPlan> accounts;
+
+    private CSASRefreshPlan(int version, List<AccountPlan> accounts) {
+        this.version = version;
+        this.accounts = Collections.unmodifiableList(accounts);
+    }
+
+    /**
+     * Compiles the plan from the reverse indexes of the providers.
+     *
+     * @param version version of the bindings the plan is compiled from
+     */
+    public static CSASRefreshPlan compile(int version, Collection<CSASBindingProvider> providers) {
+        Map<String, AccountPlan> accounts = new LinkedHashMap<>();
+        for (CSASBindingProvider provider : providers) {
+            for (String accountKey : provider.getAccountIds()) {
+                CSASAccountBindings bindings = provider.getAccountBindings(accountKey);
+                if (bindings == null)
+                    continue;
+
+                AccountPlan account = accounts.get(accountKey);
+                if (account == null) {
+                    account = new AccountPlan(bindings.getIdentity(), bindings.getAccountId());
+                    accounts.put(accountKey, account);
+                }
+                account.balance |= bindings.hasBalance();
+                account.maxTransactionId = Math.max(account.maxTransactionId, bindings.getMaxTransactionId());
+                for (String itemName : bindings.getItemNames()) {
+                    CSASItemType type = provider.getItemType(itemName);
+                    if (type != null) {
+                        ItemPlan item = new ItemPlan(itemName, type, provider.getTransactionId(itemName), provider.isNumeric(itemName), provider.getMetric(itemName), provider.getWindow(itemName));
+                        account.items.add(item);
+                        if (item.getWindow() != null)
+                            account.windows.add(item.getWindow());
+                    }
+                }
+            }
+        }
+        return new CSASRefreshPlan(version, new ArrayList<>(accounts.values()));
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public List<AccountPlan> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Endpoints needed for one account and the items their results fan out to.
+     */
+    public static class AccountPlan {
+        private final String identity;
+        private final String accountId;
+        private boolean balance;
+        private int maxTransactionId;
+        private final List<ItemPlan> items = new ArrayList<>();
+        private final Set<String> windows = new LinkedHashSet<>();
+
+        AccountPlan(String identity, String accountId) {
+            this.identity = identity;
+            this.accountId = accountId;
+        }
+
+        public String getIdentity() {
+            return identity;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        /**
+         * @return the account id qualified by the identity name, the key of the per account state
+         */
+        public String getKey() {
+            return CSASIdentity.getAccountKey(identity, accountId);
+        }
+
+        public boolean needsBalance() {
+            return balance;
+        }
+
+        public boolean needsTransactions() {
+            return maxTransactionId > 0 || !windows.isEmpty();
+        }
+
+        /**
+         * @return true if all the transactions of the history are needed for the aggregates, not only the bound positions
+         */
+        public boolean hasAggregates() {
+            return !windows.isEmpty();
+        }
+
+        /**
+         * @return windows of the aggregates bound to the account
+         */
+        public Set<String> getWindows() {
+            return windows;
+        }
+
+        public int getMaxTransactionId() {
+            return maxTransactionId;
+        }
+
+        public List<ItemPlan> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * Single item fed from the results of its account.
+     */
+    public static class ItemPlan {
+        private final String itemName;
+        private final CSASItemType type;
+        private final int transactionId;
+        private final boolean numeric;
+        private final String metric;
+        private final String window;
+
+        ItemPlan(String itemName, CSASItemType type, int transactionId, boolean numeric, String metric, String window) {
+            this.itemName = itemName;
+            this.type = type;
+            this.transactionId = transactionId;
+            this.numeric = numeric;
+            this.metric = metric;
+            this.window = window;
+        }
+
+        public String getItemName() {
+            return itemName;
+        }
+
+        public CSASItemType getType() {
+            return type;
+        }
+
+        public int getTransactionId() {
+            return transactionId;
+        }
+
+        /**
+         * @return true if the item gets the amount as a number instead of the formatted text
+         */
+        public boolean isNumeric() {
+            return numeric;
+        }
+
+        /**
+         * @return name of the bound metric, null if the item is not a metric
+         */
+        public String getMetric() {
+            return metric;
+        }
+
+        /**
+         * @return window of the bound aggregate, null if the item is not an aggregate
+         */
+        public String getWindow() {
+            return window;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces identical netbanking GET requests within one refresh cycle.
+ * The first caller of an URL performs the request, concurrent callers wait for
+ * the same in-flight response and later callers get the already parsed one.
+ * Failed requests are not kept, so the next caller tries again.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASRequestCache {
+
+    private final ConcurrentHashMap<String, FutureTask<Object>> responses = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String url, Callable<T> request) throws Exception {
+        FutureTask<Object> task = responses.get(url);
+        if (task == null) {
+            FutureTask<Object> newTask = new FutureTask<>((Callable<Object>) request);
+            task = responses.putIfAbsent(url, newTask);
+            if (task == null) {
+                task = newTask;
+                task.run();
+            }
+        }
+
+        try {
+            return (T) task.get();
+        } catch (ExecutionException e) {
+            responses.remove(url, task);
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Forgets all responses, called at the beginning of every refresh cycle.
+     */
+    public void clear() {
+        responses.clear();
+    }
+}
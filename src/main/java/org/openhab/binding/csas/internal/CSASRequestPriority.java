@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+/**
+ * Priority of a netbanking request when the rate limit budget is tight,
+ * the first one wins.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public enum CSASRequestPriority {
+    BALANCE,
+    DISCOVERY,
+    RESERVATIONS,
+    TRANSACTIONS
+}
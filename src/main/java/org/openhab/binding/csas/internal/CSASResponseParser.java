@@ -0,0 +1,21 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Reads a response of the CSAS WebAPI directly from the response stream.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public interface CSASResponseParser<T> {
+    T parse(JsonReader reader) throws Exception;
+}
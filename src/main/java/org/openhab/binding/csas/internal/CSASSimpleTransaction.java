@@ -1,5 +1,8 @@
 package org.openhab.binding.csas.internal;
 
+import java.util.Date;
+import java.util.Objects;
+
 /**
  * Created by Ondřej Pečta on 22. 11. 2016.
  */
@@ -9,6 +12,8 @@ public class CSASSimpleTransaction {
     private String accountPartyInfo = "";
     private String description = "";
     private String variableSymbol = "";
+    private Date date;
+    private CSASMoney amount;
 
     public String getBalance() {
         return balance;
@@ -50,6 +55,41 @@ public class CSASSimpleTransaction {
         this.variableSymbol = variableSymbol;
     }
 
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    public CSASMoney getAmount() {
+        return amount;
+    }
+
+    public void setAmount(CSASMoney amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof CSASSimpleTransaction))
+            return false;
+
+        CSASSimpleTransaction tran = (CSASSimpleTransaction) o;
+        return Objects.equals(balance, tran.balance) && Objects.equals(accountPartyDescription, tran.accountPartyDescription)
+                && Objects.equals(accountPartyInfo, tran.accountPartyInfo) && Objects.equals(description, tran.description)
+                && Objects.equals(variableSymbol, tran.variableSymbol) && Objects.equals(date, tran.date)
+                && Objects.equals(amount, tran.amount);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(balance, accountPartyDescription, accountPartyInfo, description, variableSymbol, date, amount);
+    }
+
     @Override
     public String toString() {
         return balance + " " + accountPartyInfo + " " + accountPartyDescription + " " + description + " " + variableSymbol;
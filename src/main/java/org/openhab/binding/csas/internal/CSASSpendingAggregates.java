@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rolling aggregates of the booked transactions of an account over the bound windows,
+ * e.g. <code>7d</code>, <code>2w</code> or <code>1m</code>. The windows are updated with
+ * the newly booked transactions only and the transactions leaving a window are subtracted,
+ * so the history is not scanned again. The amounts are aggregated in the prevailing currency
+ * of the account, the transactions in other currencies are skipped.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASSpendingAggregates {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASSpendingAggregates.class);
+
+    //Constants
+    private static final Pattern WINDOW_PATTERN = Pattern.compile("(\\d+)([dwm])");
+
+    //Windows by their spec
+    private final Map<String, Window> windows = new LinkedHashMap<>();
+
+    //Newest booking aggregated so far, the new bookings precede it in the fetched list
+    private CSASSimpleTransaction newest = null;
+
+    //Currency of the aggregated amounts
+    private String currency = null;
+
+    public CSASSpendingAggregates(Collection<String> specs) {
+        for (String spec : specs) {
+            windows.put(spec, new Window(spec));
+        }
+    }
+
+    /**
+     * @return true if the spec is a number of days, weeks or months, e.g. 7d
+     */
+    public static boolean isValidWindow(String spec) {
+        Matcher matcher = WINDOW_PATTERN.matcher(spec);
+        return matcher.matches() && Integer.parseInt(matcher.group(1)) > 0;
+    }
+
+    /**
+     * @return start of the window for the given time, the window ends with the current day
+     */
+    public static long getStart(String spec, long now) {
+        return new Window(spec).getStart(now);
+    }
+
+    public Set<String> getWindows() {
+        return windows.keySet();
+    }
+
+    /**
+     * Adds the new bookings to the windows and drops the ones which have left them. The new bookings
+     * are the ones preceding the newest aggregated booking, if it is not found among the bookings
+     * of its date or newer, the bookings of the longest window are aggregated again.
+     *
+     * @param transactions booked transactions of the account, newest first
+     * @param now          the current time
+     */
+    public void update(List<CSASSimpleTransaction> transactions, long now) {
+        for (Window window : windows.values()) {
+            window.evict(now);
+        }
+        int added = findAdded(transactions);
+        if (added < 0) {
+            added = countRecent(transactions);
+            currency = getPrevailingCurrency(transactions.subList(0, added));
+            for (Window window : windows.values()) {
+                window.clear();
+            }
+        }
+        for (int i = added - 1; i >= 0; i--) {
+            CSASSimpleTransaction booking = transactions.get(i);
+            if (booking.getAmount() != null && !Objects.equals(currency, booking.getAmount().getCurrency())) {
+                logger.debug("CSAS transaction in {} not aggregated: {}", booking.getAmount().getCurrency(), booking);
+                continue;
+            }
+            for (Window window : windows.values()) {
+                window.add(booking);
+            }
+        }
+        newest = transactions.isEmpty() ? null : transactions.get(0);
+    }
+
+    /**
+     * @return number of the bookings preceding the newest aggregated one, -1 if it is not found
+     */
+    private int findAdded(List<CSASSimpleTransaction> transactions) {
+        if (newest == null || newest.getDate() == null) {
+            return -1;
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            CSASSimpleTransaction booking = transactions.get(i);
+            if (booking.equals(newest)) {
+                return i;
+            }
+            if (booking.getDate() != null && booking.getDate().before(newest.getDate())) {
+                //past the date of the newest aggregated booking
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of the bookings at the head of the list falling into one of the windows at least
+     */
+    private int countRecent(List<CSASSimpleTransaction> transactions) {
+        long start = Long.MAX_VALUE;
+        for (Window window : windows.values()) {
+            start = Math.min(start, window.start);
+        }
+        int count = 0;
+        while (count < transactions.size()) {
+            CSASSimpleTransaction booking = transactions.get(count);
+            if (booking.getDate() != null && booking.getDate().getTime() < start) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String getPrevailingCurrency(List<CSASSimpleTransaction> transactions) {
+        Map<String, Integer> counts = new HashMap<>();
+        String prevailing = null;
+        int max = 0;
+        for (CSASSimpleTransaction booking : transactions) {
+            if (booking.getAmount() == null) {
+                continue;
+            }
+            int count = counts.merge(String.valueOf(booking.getAmount().getCurrency()), 1, Integer::sum);
+            if (count > max) {
+                max = count;
+                prevailing = booking.getAmount().getCurrency();
+            }
+        }
+        return prevailing;
+    }
+
+    /**
+     * @return sum of the debits and credits in the window, null if no amount has been seen yet
+     */
+    public CSASMoney getSum(String spec) {
+        Window window = windows.get(spec);
+        return (window != null) ? window.toMoney(window.debits + window.credits) : null;
+    }
+
+    public CSASMoney getDebits(String spec) {
+        Window window = windows.get(spec);
+        return (window != null) ? window.toMoney(window.debits) : null;
+    }
+
+    public CSASMoney getCredits(String spec) {
+        Window window = windows.get(spec);
+        return (window != null) ? window.toMoney(window.credits) : null;
+    }
+
+    public int getCount(String spec) {
+        Window window = windows.get(spec);
+        return (window != null) ? window.entries.size() : 0;
+    }
+
+    /**
+     * @return the largest debit in the window, null if there is none
+     */
+    public CSASMoney getLargestPayment(String spec) {
+        Window window = windows.get(spec);
+        return (window != null && !window.largest.isEmpty()) ? window.largest.peekFirst().getAmount() : null;
+    }
+
+    /**
+     * @return hash of the aggregated values, changing whenever one of them does
+     */
+    public int getFingerprint() {
+        int fingerprint = 1;
+        for (Window window : windows.values()) {
+            fingerprint = 31 * fingerprint + Long.hashCode(window.debits);
+            fingerprint = 31 * fingerprint + Long.hashCode(window.credits);
+            fingerprint = 31 * fingerprint + window.entries.size();
+            fingerprint = 31 * fingerprint + (window.largest.isEmpty() ? 0 : window.largest.peekFirst().hashCode());
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Running totals of one window, the amounts are held in minor units of the first seen amount.
+     */
+    private static class Window {
+        private final int length;
+        private final int unit;
+
+        //Aggregated bookings, the oldest first
+        private final ArrayDeque<CSASSimpleTransaction> entries = new ArrayDeque<>();
+
+        //Debits which can still become the largest one, decreasing from the oldest
+        private final ArrayDeque<CSASSimpleTransaction> largest = new ArrayDeque<>();
+
+        private long debits = 0;
+        private long credits = 0;
+        private int precision = -1;
+        private String currency;
+        private long start = Long.MIN_VALUE;
+
+        Window(String spec) {
+            Matcher matcher = WINDOW_PATTERN.matcher(spec);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid aggregate window: " + spec);
+            }
+            length = Integer.parseInt(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "w":
+                    unit = Calendar.WEEK_OF_YEAR;
+                    break;
+                case "m":
+                    unit = Calendar.MONTH;
+                    break;
+                default:
+                    unit = Calendar.DAY_OF_MONTH;
+            }
+        }
+
+        void add(CSASSimpleTransaction booking) {
+            if (booking.getAmount() == null || booking.getDate() == null || booking.getDate().getTime() < start) {
+                return;
+            }
+            long minor = toMinor(booking.getAmount());
+            if (minor < 0) {
+                debits += minor;
+                while (!largest.isEmpty() && toMinor(largest.peekLast().getAmount()) >= minor) {
+                    largest.pollLast();
+                }
+                largest.addLast(booking);
+            } else {
+                credits += minor;
+            }
+            entries.addLast(booking);
+        }
+
+        void evict(long now) {
+            start = getStart(now);
+            while (!entries.isEmpty() && entries.peekFirst().getDate().getTime() < start) {
+                CSASSimpleTransaction booking = entries.pollFirst();
+                long minor = toMinor(booking.getAmount());
+                if (minor < 0) {
+                    debits -= minor;
+                } else {
+                    credits -= minor;
+                }
+                if (largest.peekFirst() == booking) {
+                    largest.pollFirst();
+                }
+            }
+        }
+
+        void clear() {
+            entries.clear();
+            largest.clear();
+            debits = 0;
+            credits = 0;
+            precision = -1;
+        }
+
+        /**
+         * @return start of the window, the window ends with the current day
+         */
+        private long getStart(long now) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            calendar.add(unit, -length);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            return calendar.getTimeInMillis();
+        }
+
+        private long toMinor(CSASMoney amount) {
+            if (precision < 0) {
+                precision = amount.getPrecision();
+                currency = amount.getCurrency();
+            }
+            if (amount.getPrecision() == precision) {
+                return amount.getMinorUnits();
+            }
+            return amount.toBigDecimal().setScale(precision, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        private CSASMoney toMoney(long minor) {
+            return (precision >= 0) ? new CSASMoney(minor, precision, currency) : null;
+        }
+    }
+}
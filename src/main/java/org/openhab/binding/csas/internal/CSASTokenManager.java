@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import com.google.gson.Gson;
+import org.openhab.binding.csas.internal.model.response.CSASRefreshTokenResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the CSAS access token together with its expiry. The token is refreshed
+ * shortly before it expires or after the API has rejected it. Concurrent callers
+ * wait for a single refresh instead of each posting their own token request.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTokenManager {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASTokenManager.class);
+
+    //Constants
+    public static final String DEFAULT_TOKEN_URL = "https://www.csas.cz/widp/oauth2/token";
+    private static final long EXPIRY_MARGIN = 60000;
+    private static final long FAILURE_BACKOFF = 60000;
+    //Lifetime in seconds assumed when the token response has no expires_in
+    private static final long DEFAULT_TOKEN_LIFETIME = 300;
+
+    private final Gson gson = new Gson();
+
+    private volatile CSASTransport transport;
+    private final CSASEndpointMetrics metrics;
+
+    private String clientId = "";
+    private String clientSecret = "";
+    private String refreshToken = "";
+    private String tokenUrl = DEFAULT_TOKEN_URL;
+
+    private volatile String accessToken;
+    private volatile long expiresAt = 0;
+    private long lastFailure = 0;
+
+    //Serializes the token refreshes, the credentials are not locked while the token endpoint is called
+    private final Object refreshLock = new Object();
+
+    //Incremented whenever the token is dropped, a token obtained meanwhile is discarded
+    private int generation = 0;
+
+    public CSASTokenManager(CSASTransport transport, CSASEndpointMetrics metrics) {
+        this.transport = transport;
+        this.metrics = metrics;
+    }
+
+    public void setTransport(CSASTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the client credentials and the token endpoint, the current access token is dropped when they change.
+     */
+    public synchronized void configure(String clientId, String clientSecret, String refreshToken, String tokenUrl) {
+        if (!clientId.equals(this.clientId) || !clientSecret.equals(this.clientSecret) || !refreshToken.equals(this.refreshToken)
+                || !tokenUrl.equals(this.tokenUrl)) {
+            this.clientId = clientId;
+            this.clientSecret = clientSecret;
+            this.refreshToken = refreshToken;
+            this.tokenUrl = tokenUrl;
+            clear();
+        }
+    }
+
+    /**
+     * Returns a valid access token, refreshing it first if it is missing or about to expire.
+     *
+     * @return the access token or null if no token could be obtained
+     */
+    public String getAccessToken() {
+        String token = accessToken;
+        if (token != null && !isExpiring()) {
+            return token;
+        }
+        return refresh();
+    }
+
+    /**
+     * Marks the token as rejected by the API, so the next caller refreshes it.
+     * A token which has already been replaced by another caller is ignored.
+     */
+    public synchronized void invalidate(String token) {
+        if (token != null && token.equals(accessToken)) {
+            logger.debug("CSAS access token has been rejected");
+            accessToken = null;
+            expiresAt = 0;
+        }
+    }
+
+    /**
+     * @return true if there is a refresh token to get the access tokens with
+     */
+    public synchronized boolean isConfigured() {
+        return !refreshToken.isEmpty();
+    }
+
+    public synchronized void clear() {
+        accessToken = null;
+        expiresAt = 0;
+        lastFailure = 0;
+        generation++;
+    }
+
+    private boolean isExpiring() {
+        long expiry = expiresAt;
+        return expiry > 0 && System.currentTimeMillis() >= expiry - EXPIRY_MARGIN;
+    }
+
+    private String refresh() {
+        synchronized (refreshLock) {
+            String urlParameters;
+            String url;
+            int requested;
+            synchronized (this) {
+                //another caller might have refreshed the token while we were waiting
+                if (accessToken != null && !isExpiring()) {
+                    return accessToken;
+                }
+                if (lastFailure > 0 && System.currentTimeMillis() - lastFailure < FAILURE_BACKOFF) {
+                    return accessToken;
+                }
+                urlParameters = "client_id=" + clientId + "&client_secret=" + clientSecret + "&redirect_uri=https://localhost/code&grant_type=refresh_token&refresh_token=" + refreshToken;
+                url = tokenUrl;
+                requested = generation;
+            }
+            return requestToken(url, urlParameters, requested);
+        }
+    }
+
+    private String requestToken(String tokenUrl, String urlParameters, int requested) {
+        try {
+            byte[] postData = urlParameters.getBytes(StandardCharsets.UTF_8);
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", "application/x-www-form-urlencoded");
+
+            CSASRefreshTokenResponse resp;
+            CSASTraceSpan span = CSASTracing.tokenRefresh();
+            long start = System.currentTimeMillis();
+            try (CSASHttpResponse response = transport.execute("POST", tokenUrl, headers, postData)) {
+                metrics.requested(System.currentTimeMillis() - start);
+                if (!response.isSuccessful()) {
+                    throw new CSASHttpException(response.getStatus(), tokenUrl);
+                }
+                start = System.currentTimeMillis();
+                CSASMetrics.CountingInputStream body = new CSASMetrics.CountingInputStream(response.getBody());
+                Reader reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+                resp = gson.fromJson(reader, CSASRefreshTokenResponse.class);
+                metrics.parsed(System.currentTimeMillis() - start, body.getCount());
+                span.setBytes(body.getCount());
+            } finally {
+                span.end();
+            }
+            if (resp == null || resp.getAccessToken() == null) {
+                throw new IllegalStateException("no access token in response");
+            }
+
+            long lifetime = resp.getExpiresIn() > 0 ? resp.getExpiresIn() : DEFAULT_TOKEN_LIFETIME;
+            synchronized (this) {
+                //the credentials have changed meanwhile
+                if (requested != generation) {
+                    return accessToken;
+                }
+                accessToken = resp.getAccessToken();
+                expiresAt = System.currentTimeMillis() + lifetime * 1000;
+                lastFailure = 0;
+            }
+            logger.debug("CSAS access token refreshed, expires in {} s", lifetime);
+        } catch (Exception e) {
+            metrics.failed();
+            synchronized (this) {
+                if (requested == generation) {
+                    lastFailure = System.currentTimeMillis();
+                }
+            }
+            logger.error("Cannot get CSAS token: " + e.toString());
+        }
+        return accessToken;
+    }
+}
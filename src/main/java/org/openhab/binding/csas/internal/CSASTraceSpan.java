@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+/**
+ * Phase of a refresh cycle traced by {@link CSASTracing}. The shared {@link #NONE}
+ * span is returned while tracing is not available, so the callers need no checks.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTraceSpan {
+
+    public static final CSASTraceSpan NONE = new CSASTraceSpan();
+
+    protected CSASTraceSpan() {
+    }
+
+    public CSASTraceSpan setBytes(long bytes) {
+        return this;
+    }
+
+    public CSASTraceSpan setRecords(int records) {
+        return this;
+    }
+
+    public void end() {
+    }
+}
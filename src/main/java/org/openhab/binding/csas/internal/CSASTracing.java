@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point of the Java Flight Recorder events of the refresh cycle phases.
+ * The events are only created when the running JVM provides JFR, otherwise
+ * every phase gets the no-op {@link CSASTraceSpan#NONE}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public final class CSASTracing {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(CSASTracing.class);
+
+    //Event types, all null when JFR is not available
+    private static CSASFlightRecorder tokenRefreshEvent;
+    private static CSASFlightRecorder discoveryEvent;
+    private static CSASFlightRecorder fetchEvent;
+    private static CSASFlightRecorder parseEvent;
+    private static CSASFlightRecorder mappingEvent;
+    private static CSASFlightRecorder publishEvent;
+
+    private static final boolean ENABLED = defineEvents();
+
+    //Account fetched by the current thread, attached to the parse events
+    private static final ThreadLocal<String> currentAccount = new ThreadLocal<>();
+
+    private CSASTracing() {
+    }
+
+    private static boolean defineEvents() {
+        try {
+            tokenRefreshEvent = CSASFlightRecorder.define("org.openhab.binding.csas.TokenRefresh", "CSAS Token Refresh");
+            discoveryEvent = CSASFlightRecorder.define("org.openhab.binding.csas.Discovery", "CSAS Product Discovery");
+            fetchEvent = CSASFlightRecorder.define("org.openhab.binding.csas.Fetch", "CSAS Account Fetch");
+            parseEvent = CSASFlightRecorder.define("org.openhab.binding.csas.Parse", "CSAS Response Parse");
+            mappingEvent = CSASFlightRecorder.define("org.openhab.binding.csas.Mapping", "CSAS Item Mapping");
+            publishEvent = CSASFlightRecorder.define("org.openhab.binding.csas.Publish", "CSAS Event Publishing");
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            logger.debug("Java Flight Recorder is not available, CSAS events are disabled");
+            return false;
+        }
+    }
+
+    public static CSASTraceSpan tokenRefresh() {
+        return ENABLED ? tokenRefreshEvent.begin(null, null, null) : CSASTraceSpan.NONE;
+    }
+
+    /**
+     * @param product name of the discovered products, e.g. "cards"
+     */
+    public static CSASTraceSpan discovery(String product) {
+        return ENABLED ? discoveryEvent.begin(null, product, null) : CSASTraceSpan.NONE;
+    }
+
+    /**
+     * Starts fetching data of an account, the parse events of the current thread
+     * get the account id until the span ends.
+     */
+    public static CSASTraceSpan fetch(String accountId, CSASEndpoint endpoint) {
+        if (!ENABLED)
+            return CSASTraceSpan.NONE;
+
+        currentAccount.set(accountId);
+        return fetchEvent.begin(accountId, endpoint.name().toLowerCase(), currentAccount);
+    }
+
+    public static CSASTraceSpan parse(CSASEndpoint endpoint) {
+        return ENABLED ? parseEvent.begin(currentAccount.get(), endpoint.name().toLowerCase(), null) : CSASTraceSpan.NONE;
+    }
+
+    public static CSASTraceSpan mapping(String accountId) {
+        return ENABLED ? mappingEvent.begin(accountId, null, null) : CSASTraceSpan.NONE;
+    }
+
+    public static CSASTraceSpan publish(String accountId, String itemName) {
+        return ENABLED ? publishEvent.begin(accountId, itemName, null) : CSASTraceSpan.NONE;
+    }
+}
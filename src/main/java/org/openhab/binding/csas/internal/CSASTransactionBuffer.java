@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Positional view of the pending reservations followed by the booked transactions of an account.
+ * The newest bookings are kept in a bounded ring, which is updated with the newly booked ones only.
+ * A reservation which has been booked already is hidden, its booking is matched by the amount,
+ * the merchant and the booking date, so a card payment does not show up twice and the positions
+ * of the other transactions stay where they were.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTransactionBuffer extends AbstractList<CSASSimpleTransaction> {
+
+    //Constants
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final long MATCH_WINDOW = 7 * DAY;
+
+    //Newest bookings, the ring starts with the newest one at head
+    private final CSASSimpleTransaction[] bookings;
+    private int head = 0;
+    private int count = 0;
+
+    //Reservations not booked yet, newest first
+    private final ArrayList<CSASSimpleTransaction> pending = new ArrayList<>();
+
+    //Bookings matched to a reservation by the last update
+    private final BitSet matched = new BitSet();
+
+    public CSASTransactionBuffer(int capacity) {
+        bookings = new CSASSimpleTransaction[Math.max(1, capacity)];
+    }
+
+    public int getCapacity() {
+        return bookings.length;
+    }
+
+    /**
+     * @return number of the reservations hidden by the last update because they have been booked
+     */
+    public int getReconciled() {
+        return matched.cardinality();
+    }
+
+    /**
+     * Merges the fetched records into the buffer.
+     *
+     * @param reservations current reservations of the account, newest first
+     * @param transactions booked transactions of the account, newest first
+     */
+    public void update(List<CSASSimpleTransaction> reservations, List<CSASSimpleTransaction> transactions) {
+        mergeBookings(transactions);
+        reconcile(reservations);
+    }
+
+    private void mergeBookings(List<CSASSimpleTransaction> transactions) {
+        int pushed = findKnownBookings(transactions);
+        if (pushed < 0) {
+            //no overlap with the held bookings, e.g. the first update or after a long outage
+            Arrays.fill(bookings, null);
+            head = 0;
+            count = 0;
+            pushed = Math.min(transactions.size(), bookings.length);
+        }
+        for (int i = pushed - 1; i >= 0; i--) {
+            push(transactions.get(i));
+        }
+        //the held bookings past the end of the fetched list are gone
+        count = Math.min(transactions.size(), bookings.length);
+    }
+
+    /**
+     * Looks up the held bookings in the fetched list. They are kept only if they equal the fetched
+     * bookings following the new ones, so the positions are the same as after a fresh fetch.
+     *
+     * @return number of the new bookings preceding them, -1 if they do not match the list
+     */
+    private int findKnownBookings(List<CSASSimpleTransaction> transactions) {
+        int size = Math.min(transactions.size(), bookings.length);
+        for (int start = 0; start < size; start++) {
+            if (size - start <= count && isHeldFrom(transactions, start, size)) {
+                return start;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isHeldFrom(List<CSASSimpleTransaction> transactions, int start, int size) {
+        for (int i = start; i < size; i++) {
+            if (!getBooking(i - start).equals(transactions.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void push(CSASSimpleTransaction booking) {
+        head = (head + bookings.length - 1) % bookings.length;
+        bookings[head] = booking;
+        count = Math.min(count + 1, bookings.length);
+    }
+
+    private CSASSimpleTransaction getBooking(int index) {
+        return bookings[(head + index) % bookings.length];
+    }
+
+    private void reconcile(List<CSASSimpleTransaction> reservations) {
+        pending.clear();
+        matched.clear();
+        for (CSASSimpleTransaction reservation : reservations) {
+            int booking = findBooking(reservation);
+            if (booking >= 0) {
+                matched.set(booking);
+            } else {
+                pending.add(reservation);
+            }
+        }
+    }
+
+    /**
+     * @return position of the unmatched booking of the reservation, -1 if it has not been booked yet
+     */
+    private int findBooking(CSASSimpleTransaction reservation) {
+        if (reservation.getDate() == null || reservation.getAmount() == null) {
+            return -1;
+        }
+        //the booking dates have no time of the day
+        long from = reservation.getDate().getTime() - DAY;
+        long to = reservation.getDate().getTime() + MATCH_WINDOW;
+        String merchant = normalize(reservation.getAccountPartyInfo());
+        for (int i = 0; i < count; i++) {
+            CSASSimpleTransaction booking = getBooking(i);
+            if (booking.getDate() == null || booking.getDate().getTime() > to) {
+                continue;
+            }
+            if (booking.getDate().getTime() < from) {
+                //the older bookings precede the reservation
+                break;
+            }
+            if (!matched.get(i) && isSameAmount(reservation.getAmount(), booking.getAmount()) && isSameMerchant(merchant, booking)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isSameAmount(CSASMoney reserved, CSASMoney booked) {
+        //the reservations may come without the sign of the debit
+        return booked != null && Objects.equals(reserved.getCurrency(), booked.getCurrency())
+                && reserved.toBigDecimal().abs().compareTo(booked.toBigDecimal().abs()) == 0;
+    }
+
+    private boolean isSameMerchant(String merchant, CSASSimpleTransaction booking) {
+        if (merchant.isEmpty()) {
+            return true;
+        }
+        String text = normalize(booking.getDescription()) + " " + normalize(booking.getAccountPartyInfo()) + " " + normalize(booking.getAccountPartyDescription());
+        if (text.contains(merchant)) {
+            return true;
+        }
+        //the booking often carries a shortened merchant name
+        String word = merchant.split(" ")[0];
+        return word.length() >= 3 && text.contains(word);
+    }
+
+    private String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toUpperCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    @Override
+    public CSASSimpleTransaction get(int index) {
+        int reserved = pending.size();
+        if (index < 0 || index >= reserved + count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return index < reserved ? pending.get(index) : getBooking(index - reserved);
+    }
+
+    @Override
+    public int size() {
+        return pending.size() + count;
+    }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.apache.commons.lang.time.DateUtils.truncate;
+
+/**
+ * Append-only on-disk journal of the transactions of one account.
+ * <p>
+ * The data file holds length prefixed records in booking order, the index file
+ * holds a fixed size entry (record offset and booking date) per record. Both files
+ * are read through memory mappings, so a transaction at any position is read
+ * without loading the whole history. A partially written record at the end of the
+ * files (e.g. after a crash) is dropped when the journal is opened.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTransactionJournal implements Closeable {
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final byte RECORD_VERSION = 2;
+
+    private final FileChannel data;
+    private final FileChannel index;
+
+    private ByteBuffer dataMap;
+    private ByteBuffer indexMap;
+    private int count;
+
+    public CSASTransactionJournal(File directory, String accountId) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        String name = accountId.replaceAll("[^A-Za-z0-9_-]", "_");
+        data = FileChannel.open(new File(directory, name + ".dat").toPath(), CREATE, READ, WRITE);
+        try {
+            index = FileChannel.open(new File(directory, name + ".idx").toPath(), CREATE, READ, WRITE);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        recover();
+        map();
+    }
+
+    /**
+     * Drops the index entries pointing behind the data and the data behind the last complete record.
+     */
+    private void recover() throws IOException {
+        long entries = index.size() / INDEX_ENTRY_SIZE;
+        long dataEnd = 0;
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (entries > 0) {
+            entry.clear();
+            index.read(entry, (entries - 1) * INDEX_ENTRY_SIZE);
+            long offset = entry.getLong(0);
+            length.clear();
+            if (offset + 4 <= data.size() && data.read(length, offset) == 4) {
+                long end = offset + 4 + length.getInt(0);
+                if (end <= data.size()) {
+                    dataEnd = end;
+                    break;
+                }
+            }
+            entries--;
+        }
+        index.truncate(entries * INDEX_ENTRY_SIZE);
+        data.truncate(dataEnd);
+        count = (int) entries;
+    }
+
+    private void map() throws IOException {
+        dataMap = data.map(FileChannel.MapMode.READ_ONLY, 0, data.size());
+        indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return booking date of the latest journaled transaction or null if the journal is empty
+     */
+    public synchronized Date getLastDate() {
+        return count == 0 ? null : new Date(indexMap.getLong((count - 1) * INDEX_ENTRY_SIZE + 8));
+    }
+
+    /**
+     * Appends the fetched transactions which are not journaled yet. Transactions older than
+     * the day of the latest journaled one are skipped, transactions of that day are compared
+     * with the journaled ones.
+     *
+     * @param fetched fetched transactions, the latest first
+     * @return number of appended transactions
+     */
+    public synchronized int append(List<CSASSimpleTransaction> fetched) throws IOException {
+        Date lastDate = getLastDate();
+        Date lastDay = lastDate != null ? truncate(lastDate, Calendar.DAY_OF_MONTH) : null;
+
+        //transactions of the last journaled day, identical transactions are counted
+        Map<String, Integer> journaled = new HashMap<>();
+        for (int i = count - 1; i >= 0 && lastDay != null && !getDate(indexMap, i).before(lastDay); i--) {
+            String key = getKey(read(dataMap, indexMap, i));
+            Integer n = journaled.get(key);
+            journaled.put(key, n == null ? 1 : n + 1);
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteBuffer entries = ByteBuffer.allocate(fetched.size() * INDEX_ENTRY_SIZE);
+        long offset = data.size();
+        for (int i = fetched.size() - 1; i >= 0; i--) {
+            CSASSimpleTransaction tran = fetched.get(i);
+            if (tran.getDate() == null || (lastDay != null && tran.getDate().before(lastDay))) {
+                continue;
+            }
+            String key = getKey(tran);
+            Integer n = journaled.get(key);
+            if (n != null && n > 0) {
+                journaled.put(key, n - 1);
+                continue;
+            }
+
+            byte[] record = toRecord(tran);
+            records.write(record);
+            entries.putLong(offset).putLong(tran.getDate().getTime());
+            offset += record.length;
+        }
+
+        int appended = entries.position() / INDEX_ENTRY_SIZE;
+        if (appended == 0) {
+            return 0;
+        }
+
+        //data first, so the index never points to a missing record
+        data.write(ByteBuffer.wrap(records.toByteArray()), data.size());
+        data.force(false);
+        entries.flip();
+        index.write(entries, index.size());
+        index.force(false);
+
+        count += appended;
+        map();
+        return appended;
+    }
+
+    /**
+     * Returns a read-only view of the journaled transactions, the latest first.
+     * The view is not affected by later appends.
+     */
+    public synchronized List<CSASSimpleTransaction> getTransactions() {
+        final int size = count;
+        final ByteBuffer dataView = dataMap.duplicate();
+        final ByteBuffer indexView = indexMap.duplicate();
+        return new AbstractList<CSASSimpleTransaction>() {
+            @Override
+            public CSASSimpleTransaction get(int position) {
+                if (position < 0 || position >= size) {
+                    throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+                }
+                return read(dataView, indexView, size - 1 - position);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    private static Date getDate(ByteBuffer indexBuffer, int i) {
+        return new Date(indexBuffer.getLong(i * INDEX_ENTRY_SIZE + 8));
+    }
+
+    private static String getKey(CSASSimpleTransaction tran) {
+        return tran.getDate().getTime() + "|" + tran.getBalance() + "|" + tran.getAccountPartyDescription() + "|"
+                + tran.getAccountPartyInfo() + "|" + tran.getDescription() + "|" + tran.getVariableSymbol();
+    }
+
+    private static byte[] toRecord(CSASSimpleTransaction tran) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(RECORD_VERSION);
+        out.writeLong(tran.getDate().getTime());
+        writeString(out, tran.getBalance());
+        writeString(out, tran.getAccountPartyDescription());
+        writeString(out, tran.getAccountPartyInfo());
+        writeString(out, tran.getDescription());
+        writeString(out, tran.getVariableSymbol());
+        CSASMoney amount = tran.getAmount();
+        out.writeBoolean(amount != null);
+        if (amount != null) {
+            out.writeLong(amount.getMinorUnits());
+            out.writeInt(amount.getPrecision());
+            writeString(out, amount.getCurrency() != null ? amount.getCurrency() : "");
+        }
+        out.flush();
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length - 4);
+        return record;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static CSASSimpleTransaction read(ByteBuffer dataBuffer, ByteBuffer indexBuffer, int i) {
+        ByteBuffer record = dataBuffer.duplicate();
+        record.position((int) indexBuffer.getLong(i * INDEX_ENTRY_SIZE) + 4);
+        byte version = record.get();
+
+        CSASSimpleTransaction tran = new CSASSimpleTransaction();
+        tran.setDate(new Date(record.getLong()));
+        tran.setBalance(readString(record));
+        tran.setAccountPartyDescription(readString(record));
+        tran.setAccountPartyInfo(readString(record));
+        tran.setDescription(readString(record));
+        tran.setVariableSymbol(readString(record));
+        //the amount is kept since version 2
+        if (version >= 2 && record.get() != 0) {
+            tran.setAmount(new CSASMoney(record.getLong(), record.getInt(), readString(record)));
+        }
+        return tran;
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
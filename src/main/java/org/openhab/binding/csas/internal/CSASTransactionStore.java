@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.apache.commons.lang.time.DateUtils.truncate;
+
+/**
+ * Locally held transactions of one account used by the incremental synchronization.
+ * The store remembers the latest booking date seen (high-water mark), so only the
+ * transactions booked since that day have to be requested again.
+ * When a journal is attached, the transactions and the mark are kept in the
+ * {@link CSASTransactionJournal} instead of memory and survive a restart.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTransactionStore {
+
+    //transactions, the latest first
+    private ArrayList<CSASSimpleTransaction> transactions = new ArrayList<>();
+
+    //start of the period covered by the transactions, null if not synchronized yet
+    private Date since;
+
+    //the latest booking date seen
+    private Date highWaterMark;
+
+    //on-disk journal, null if the transactions are held in memory only
+    private final CSASTransactionJournal journal;
+
+    public CSASTransactionStore() {
+        this(null);
+    }
+
+    public CSASTransactionStore(CSASTransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the date the next request has to start from.
+     *
+     * @param oldest start of the required history period
+     */
+    public synchronized Date getSyncStart(Date oldest) {
+        if (journal != null) {
+            Date lastDate = journal.getLastDate();
+            return getSyncStart(lastDate, oldest);
+        }
+        if (since == null || highWaterMark == null || oldest.before(since)) {
+            return oldest;
+        }
+        return getSyncStart(highWaterMark, oldest);
+    }
+
+    private Date getSyncStart(Date mark, Date oldest) {
+        if (mark == null) {
+            return oldest;
+        }
+        Date markDay = truncate(mark, Calendar.DAY_OF_MONTH);
+        return markDay.before(oldest) ? oldest : markDay;
+    }
+
+    /**
+     * Merges the transactions fetched from the given date. They replace all held
+     * transactions of that period, older ones are kept unless they fall out of the
+     * required history period. With a journal, the transactions not journaled yet are
+     * appended and nothing is ever dropped.
+     *
+     * @param from    start date of the fetched transactions
+     * @param oldest  start of the required history period
+     * @param fetched fetched transactions, the latest first
+     */
+    public synchronized void merge(Date from, Date oldest, List<CSASSimpleTransaction> fetched) throws IOException {
+        if (journal != null) {
+            journal.append(fetched);
+            return;
+        }
+
+        ArrayList<CSASSimpleTransaction> merged = new ArrayList<>(fetched);
+        for (CSASSimpleTransaction tran : transactions) {
+            Date date = tran.getDate();
+            if (date != null && date.before(from) && !date.before(oldest)) {
+                merged.add(tran);
+            }
+        }
+
+        Date mark = null;
+        for (CSASSimpleTransaction tran : merged) {
+            Date date = tran.getDate();
+            if (date != null && (mark == null || date.after(mark))) {
+                mark = date;
+            }
+        }
+
+        transactions = merged;
+        highWaterMark = mark;
+        since = oldest;
+    }
+
+    /**
+     * @return the transactions, the latest first
+     */
+    public synchronized List<CSASSimpleTransaction> getTransactions() {
+        if (journal != null) {
+            return journal.getTransactions();
+        }
+        return new ArrayList<>(transactions);
+    }
+
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
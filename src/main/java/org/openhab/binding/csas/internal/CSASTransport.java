@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * HTTP transport used for all calls to the CSAS WebAPI. The default implementation
+ * is {@link CSASUrlConnectionTransport}, tests and stub servers can plug in their own.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public interface CSASTransport {
+
+    /**
+     * Executes a request. The caller must close the returned response, so the
+     * underlying connection can be reused.
+     *
+     * @param method  HTTP method
+     * @param url     request URL
+     * @param headers request headers
+     * @param body    request body or null
+     * @return response with already decoded body
+     */
+    CSASHttpResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException;
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import org.openhab.core.events.EventPublisher;
+import org.openhab.core.types.State;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the item updates of a refresh cycle and publishes them in one burst once
+ * all items are computed. With a debounce time a new value is only published after
+ * it has been staged for at least that long, a value flipping back to the published
+ * one in the meantime is dropped without any event.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASUpdatePublisher {
+
+    private static class PendingUpdate {
+        private final String accountId;
+        private final String itemName;
+        private final State state;
+        private final long since;
+
+        private PendingUpdate(String accountId, String itemName, State state, long since) {
+            this.accountId = accountId;
+            this.itemName = itemName;
+            this.state = state;
+            this.since = since;
+        }
+    }
+
+    //Staged updates by item name, in the order they were staged
+    private final Map<String, PendingUpdate> pending = new LinkedHashMap<>();
+
+    private long debounce = 0;
+
+    public synchronized void configure(long debounce) {
+        this.debounce = Math.max(0, debounce);
+    }
+
+    /**
+     * Stages a new value of the item, staging the same value again keeps its original staging time.
+     */
+    public synchronized void stage(String accountId, String itemName, State state, long now) {
+        PendingUpdate update = pending.get(itemName);
+        if (update != null && update.state.equals(state))
+            return;
+
+        pending.put(itemName, new PendingUpdate(accountId, itemName, state, now));
+    }
+
+    /**
+     * Drops the staged value of the item, called when the item has its current value again.
+     */
+    public synchronized void cancel(String itemName) {
+        pending.remove(itemName);
+    }
+
+    /**
+     * Publishes all staged updates which are due.
+     *
+     * @return the number of published updates
+     */
+    public int publish(EventPublisher eventPublisher, long now) {
+        List<PendingUpdate> due = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PendingUpdate> it = pending.values().iterator();
+            while (it.hasNext()) {
+                PendingUpdate update = it.next();
+                if (now - update.since >= debounce) {
+                    due.add(update);
+                    it.remove();
+                }
+            }
+        }
+
+        for (PendingUpdate update : due) {
+            CSASTraceSpan span = CSASTracing.publish(update.accountId, update.itemName);
+            eventPublisher.postUpdate(update.itemName, update.state);
+            span.end();
+        }
+        return due.size();
+    }
+
+    public synchronized void clear() {
+        pending.clear();
+    }
+}
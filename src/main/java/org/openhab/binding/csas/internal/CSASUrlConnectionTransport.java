@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link CSASTransport} built on {@link HttpURLConnection}. Connections are kept
+ * alive and pooled by the JDK keep-alive cache, which works only when every
+ * response stream (including the error stream) is read to the end and closed -
+ * this is what {@link CSASHttpResponse#close()} does. Responses are requested
+ * gzip compressed and decoded transparently.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASUrlConnectionTransport implements CSASTransport {
+
+    private volatile int connectTimeout = 10000;
+    private volatile int readTimeout = 30000;
+
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public CSASHttpResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("Connection", "keep-alive");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream os = connection.getOutputStream()) {
+                    os.write(body);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            InputStream stream = (status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+            if (stream != null && "gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                stream = new GZIPInputStream(stream);
+            }
+            return new CSASHttpResponse(status, readHeaders(connection), stream);
+        } catch (IOException e) {
+            //the connection is in an unknown state, do not return it to the pool
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private Map<String, String> readHeaders(HttpURLConnection connection) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if (header.getKey() != null && !header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+        return headers;
+    }
+}
@@ -6,7 +6,14 @@ public class CSASRefreshTokenResponse {
     @SerializedName("access_token")
     private String accessToken;
 
+    @SerializedName("expires_in")
+    private long expiresIn;
+
     public String getAccessToken() {
         return accessToken;
     }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
 }
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the state transitions of the {@link CSASCircuitBreaker}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASCircuitBreakerTest {
+
+    @Test
+    public void opensAfterThreshold() {
+        CSASCircuitBreaker breaker = new CSASCircuitBreaker("test");
+        breaker.configure(2, 60000);
+
+        breaker.failure();
+        assertTrue(breaker.allowRequest());
+        breaker.failure();
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsFailures() {
+        CSASCircuitBreaker breaker = new CSASCircuitBreaker("test");
+        breaker.configure(2, 60000);
+
+        breaker.failure();
+        breaker.success();
+        breaker.failure();
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void allowsSingleTrialAfterTimeout() {
+        CSASCircuitBreaker breaker = openBreaker();
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void closesAfterSuccessfulTrial() {
+        CSASCircuitBreaker breaker = openBreaker();
+
+        assertTrue(breaker.allowRequest());
+        breaker.success();
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void reopensAfterFailedTrial() {
+        CSASCircuitBreaker breaker = new CSASCircuitBreaker("test");
+        breaker.configure(1, 60000);
+        breaker.failure();
+        breaker.configure(1, 0);
+
+        assertTrue(breaker.allowRequest());
+        breaker.configure(1, 60000);
+        breaker.failure();
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void cancelReleasesTrial() {
+        CSASCircuitBreaker breaker = openBreaker();
+
+        assertTrue(breaker.allowRequest());
+        breaker.cancel();
+        assertTrue(breaker.allowRequest());
+    }
+
+    //breaker which has been opened and whose timeout has already elapsed
+    private static CSASCircuitBreaker openBreaker() {
+        CSASCircuitBreaker breaker = new CSASCircuitBreaker("test");
+        breaker.configure(1, 0);
+        breaker.failure();
+        return breaker;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of the parsing and the validation of the {@link CSASConfiguration}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASConfigurationTest {
+
+    @Test
+    public void keepsDefaults() {
+        CSASConfiguration config = CSASConfiguration.parse(new HashMap<String, Object>());
+
+        assertEquals(1800000, config.getRefreshInterval());
+        assertEquals(25, config.getPageSize());
+        assertEquals(0, config.getActiveFrom());
+        assertEquals(24, config.getActiveTo());
+    }
+
+    @Test
+    public void parsesActiveHours() {
+        CSASConfiguration config = parse("activeHours", "7-22");
+
+        assertEquals(7, config.getActiveFrom());
+        assertEquals(22, config.getActiveTo());
+    }
+
+    @Test
+    public void ignoresActiveHoursOutsideDay() {
+        CSASConfiguration config = parse("activeHours", "7-25");
+
+        assertEquals(0, config.getActiveFrom());
+        assertEquals(24, config.getActiveTo());
+    }
+
+    @Test
+    public void raisesMaxRefreshToMinRefresh() {
+        CSASConfiguration config = parse("minRefresh", "600000", "maxRefresh", "300000");
+
+        assertEquals(600000, config.getMinRefreshInterval());
+        assertEquals(600000, config.getMaxRefreshInterval());
+    }
+
+    @Test
+    public void clampsNegativeValues() {
+        CSASConfiguration config = parse("pageSize", "-5", "retries", "-1", "breakerThreshold", "0");
+
+        assertEquals(0, config.getPageSize());
+        assertEquals(0, config.getMaxRetries());
+        assertEquals(1, config.getBreakerThreshold());
+    }
+
+    private static CSASConfiguration parse(String... properties) {
+        Map<String, Object> configuration = new HashMap<>();
+        for (int i = 0; i < properties.length; i += 2) {
+            configuration.put(properties[i], properties[i + 1]);
+        }
+        return CSASConfiguration.parse(configuration);
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of the display formatting of the {@link CSASMoney}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASMoneyTest {
+
+    @Test
+    public void groupsThousands() {
+        assertEquals("1 234 567.89 CZK", new CSASMoney(123456789, 2, "CZK").toString());
+        assertEquals("123.45 CZK", new CSASMoney(12345, 2, "CZK").toString());
+        assertEquals("1 000.00 CZK", new CSASMoney(100000, 2, "CZK").toString());
+    }
+
+    @Test
+    public void formatsNegativeAmounts() {
+        assertEquals("-12 345.67 EUR", new CSASMoney(-1234567, 2, "EUR").toString());
+        assertEquals("-0.05 EUR", new CSASMoney(-5, 2, "EUR").toString());
+    }
+
+    @Test
+    public void padsFraction() {
+        assertEquals("1.05 CZK", new CSASMoney(105, 2, "CZK").toString());
+        assertEquals("1.005 CZK", new CSASMoney(1005, 3, "CZK").toString());
+        assertEquals("0.00 CZK", new CSASMoney(0, 2, "CZK").toString());
+    }
+
+    @Test
+    public void formatsWholeAmounts() {
+        assertEquals("1 500.00 JPY", new CSASMoney(1500, 0, "JPY").toString());
+    }
+
+    @Test
+    public void omitsMissingCurrency() {
+        assertEquals("12.34", new CSASMoney(1234, 2, null).toString());
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests of the token bucket and the throttling of the {@link CSASRateLimiter}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASRateLimiterTest {
+
+    @Test
+    public void sharesLimiterOfSameKey() {
+        assertSame(CSASRateLimiter.forKey("shared"), CSASRateLimiter.forKey("shared"));
+    }
+
+    @Test
+    public void doesNotLimitWithoutRate() throws Exception {
+        CSASRateLimiter limiter = CSASRateLimiter.forKey("unlimited");
+        limiter.configure(0, 5);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(CSASRequestPriority.TRANSACTIONS, 0);
+        }
+    }
+
+    @Test
+    public void rejectsRequestsOverBurst() throws Exception {
+        CSASRateLimiter limiter = CSASRateLimiter.forKey("burst");
+        limiter.configure(1, 2);
+
+        limiter.acquire(CSASRequestPriority.TRANSACTIONS, 0);
+        limiter.acquire(CSASRequestPriority.TRANSACTIONS, 0);
+        try {
+            limiter.acquire(CSASRequestPriority.TRANSACTIONS, 100);
+            fail("request over the burst should not be sent");
+        } catch (CSASHttpException e) {
+            assertEquals(429, e.getStatus());
+        }
+    }
+
+    @Test
+    public void holdsRequestsBackForRetryAfter() throws Exception {
+        CSASRateLimiter limiter = CSASRateLimiter.forKey("throttled");
+        limiter.configure(0, 5);
+
+        assertEquals(120000, limiter.throttled("120"));
+        try {
+            limiter.acquire(CSASRequestPriority.TRANSACTIONS, 1000);
+            fail("request should be held back");
+        } catch (CSASHttpException e) {
+            assertEquals(429, e.getStatus());
+        }
+    }
+
+    @Test
+    public void defaultsMalformedRetryAfter() {
+        CSASRateLimiter limiter = CSASRateLimiter.forKey("malformed");
+        limiter.configure(0, 5);
+
+        assertEquals(60000, limiter.throttled(null));
+        assertEquals(60000, limiter.throttled("soon"));
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the rolling windows of the {@link CSASSpendingAggregates}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASSpendingAggregatesTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final long NOW = 1700000000000L;
+
+    @Test
+    public void addsNewBookings() {
+        CSASSpendingAggregates aggregates = new CSASSpendingAggregates(Arrays.asList("7d"));
+        aggregates.update(bookings(transaction(-1000, "CZK", 1), transaction(500, "CZK", 2)), NOW);
+        aggregates.update(bookings(transaction(-3000, "CZK", 0), transaction(-1000, "CZK", 1), transaction(500, "CZK", 2)), NOW);
+
+        assertEquals(3, aggregates.getCount("7d"));
+        assertEquals(-4000, aggregates.getDebits("7d").getMinorUnits());
+        assertEquals(500, aggregates.getCredits("7d").getMinorUnits());
+        assertEquals(-3000, aggregates.getLargestPayment("7d").getMinorUnits());
+    }
+
+    @Test
+    public void addsBookingOfSameDayAsNewest() {
+        CSASSpendingAggregates aggregates = new CSASSpendingAggregates(Arrays.asList("7d"));
+        CSASSimpleTransaction newest = transaction(-1000, "CZK", 1);
+        CSASSimpleTransaction oldest = transaction(-2000, "CZK", 3);
+        aggregates.update(bookings(newest, oldest), NOW);
+        aggregates.update(bookings(transaction(-5000, "CZK", 1), newest, oldest), NOW);
+
+        assertEquals(3, aggregates.getCount("7d"));
+        assertEquals(-8000, aggregates.getSum("7d").getMinorUnits());
+    }
+
+    @Test
+    public void rebuildsWhenNewestBookingIsCorrected() {
+        CSASSpendingAggregates aggregates = new CSASSpendingAggregates(Arrays.asList("7d"));
+        CSASSimpleTransaction oldest = transaction(-2000, "CZK", 3);
+        aggregates.update(bookings(transaction(-1000, "CZK", 1), oldest), NOW);
+        aggregates.update(bookings(transaction(-1500, "CZK", 1), oldest), NOW);
+
+        assertEquals(2, aggregates.getCount("7d"));
+        assertEquals(-3500, aggregates.getSum("7d").getMinorUnits());
+    }
+
+    @Test
+    public void dropsBookingsLeavingWindow() {
+        CSASSpendingAggregates aggregates = new CSASSpendingAggregates(Arrays.asList("7d"));
+        List<CSASSimpleTransaction> list = bookings(transaction(-1000, "CZK", 1), transaction(-2000, "CZK", 5));
+        aggregates.update(list, NOW);
+        aggregates.update(list, NOW + 3 * DAY);
+
+        assertEquals(1, aggregates.getCount("7d"));
+        assertEquals(-1000, aggregates.getDebits("7d").getMinorUnits());
+    }
+
+    @Test
+    public void skipsOtherCurrencies() {
+        CSASSpendingAggregates aggregates = new CSASSpendingAggregates(Arrays.asList("7d"));
+        aggregates.update(bookings(transaction(-1000, "EUR", 1), transaction(-2000, "CZK", 2), transaction(-3000, "CZK", 3)), NOW);
+
+        assertEquals(2, aggregates.getCount("7d"));
+        assertEquals(-5000, aggregates.getSum("7d").getMinorUnits());
+        assertEquals("CZK", aggregates.getSum("7d").getCurrency());
+    }
+
+    private static List<CSASSimpleTransaction> bookings(CSASSimpleTransaction... transactions) {
+        return new ArrayList<>(Arrays.asList(transactions));
+    }
+
+    private static CSASSimpleTransaction transaction(long minorUnits, String currency, int daysAgo) {
+        CSASSimpleTransaction transaction = new CSASSimpleTransaction();
+        transaction.setAccountPartyInfo("PARTY " + minorUnits);
+        transaction.setAmount(new CSASMoney(minorUnits, 2, currency));
+        transaction.setDate(new Date(NOW - daysAgo * DAY));
+        return transaction;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the access token caching and refreshing of the {@link CSASTokenManager}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTokenManagerTest {
+
+    private FakeTransport transport;
+    private CSASTokenManager manager;
+
+    @Before
+    public void setUp() {
+        transport = new FakeTransport();
+        manager = new CSASTokenManager(transport, new CSASEndpointMetrics());
+        manager.configure("client", "secret", "refresh", "https://localhost/token");
+    }
+
+    @Test
+    public void cachesToken() {
+        transport.respond(200, "{\"access_token\":\"first\",\"expires_in\":3600}");
+
+        assertEquals("first", manager.getAccessToken());
+        assertEquals("first", manager.getAccessToken());
+        assertEquals(1, transport.requests);
+    }
+
+    @Test
+    public void refreshesInvalidatedToken() {
+        transport.respond(200, "{\"access_token\":\"first\",\"expires_in\":3600}");
+        manager.getAccessToken();
+
+        transport.respond(200, "{\"access_token\":\"second\",\"expires_in\":3600}");
+        manager.invalidate("first");
+        assertEquals("second", manager.getAccessToken());
+        assertEquals(2, transport.requests);
+    }
+
+    @Test
+    public void ignoresReplacedToken() {
+        transport.respond(200, "{\"access_token\":\"first\",\"expires_in\":3600}");
+        manager.getAccessToken();
+
+        manager.invalidate("older");
+        assertEquals("first", manager.getAccessToken());
+        assertEquals(1, transport.requests);
+    }
+
+    @Test
+    public void refreshesExpiringToken() {
+        transport.respond(200, "{\"access_token\":\"first\",\"expires_in\":30}");
+        manager.getAccessToken();
+
+        transport.respond(200, "{\"access_token\":\"second\",\"expires_in\":3600}");
+        assertEquals("second", manager.getAccessToken());
+    }
+
+    @Test
+    public void backsOffAfterFailure() {
+        transport.respond(500, "");
+
+        assertNull(manager.getAccessToken());
+        assertNull(manager.getAccessToken());
+        assertEquals(1, transport.requests);
+    }
+
+    @Test
+    public void retriesAfterReconfiguration() {
+        transport.respond(500, "");
+        manager.getAccessToken();
+
+        transport.respond(200, "{\"access_token\":\"first\",\"expires_in\":3600}");
+        manager.configure("client", "secret", "other", "https://localhost/token");
+        assertEquals("first", manager.getAccessToken());
+        assertEquals(2, transport.requests);
+    }
+
+    private static class FakeTransport implements CSASTransport {
+        private int status;
+        private String body;
+        private int requests = 0;
+
+        void respond(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        @Override
+        public CSASHttpResponse execute(String method, String url, Map<String, String> headers, byte[] body)
+                throws IOException {
+            requests++;
+            return new CSASHttpResponse(status, Collections.<String, String>emptyMap(),
+                    new ByteArrayInputStream(this.body.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
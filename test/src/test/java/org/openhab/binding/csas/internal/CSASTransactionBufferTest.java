@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the merging and the reconciliation of the {@link CSASTransactionBuffer}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTransactionBufferTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final long NOW = 1700000000000L;
+
+    private static final List<CSASSimpleTransaction> NONE = Collections.emptyList();
+
+    @Test
+    public void keepsHeldBookingsAndAddsNewOnes() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        buffer.update(NONE, bookings("D", "C", "B", "A"));
+
+        buffer.update(NONE, bookings("F", "E", "D", "C", "B", "A"));
+        assertEquals(bookings("F", "E", "D", "C", "B"), buffer);
+    }
+
+    @Test
+    public void rebuildsWhenBookingInsertedBetweenHeldOnes() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        buffer.update(NONE, bookings("E", "D", "C", "B", "A"));
+
+        buffer.update(NONE, bookings("E", "D", "C", "Y", "B", "A"));
+        assertEquals(bookings("E", "D", "C", "Y", "B"), buffer);
+    }
+
+    @Test
+    public void dropsHeldBookingsMissingInShorterList() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        buffer.update(NONE, bookings("C", "B", "A"));
+
+        buffer.update(NONE, bookings("D", "C", "B"));
+        assertEquals(bookings("D", "C", "B"), buffer);
+    }
+
+    @Test
+    public void hidesBookedReservation() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        CSASSimpleTransaction reservation = transaction("ALBERT PRAHA", -25000, "CZK", NOW);
+        CSASSimpleTransaction booking = transaction("Albert Praha 4", -25000, "CZK", NOW + DAY);
+        buffer.update(Arrays.asList(reservation), Arrays.asList(booking, booking("A")));
+
+        assertEquals(1, buffer.getReconciled());
+        assertEquals(Arrays.asList(booking, booking("A")), buffer);
+    }
+
+    @Test
+    public void keepsReservationNotBookedYet() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        CSASSimpleTransaction reservation = transaction("ALBERT PRAHA", -25000, "CZK", NOW);
+        CSASSimpleTransaction other = transaction("TESCO", -25000, "CZK", NOW);
+        CSASSimpleTransaction otherAmount = transaction("ALBERT PRAHA", -26000, "CZK", NOW);
+        CSASSimpleTransaction otherCurrency = transaction("ALBERT PRAHA", -25000, "EUR", NOW);
+        buffer.update(Arrays.asList(reservation), Arrays.asList(other, otherAmount, otherCurrency));
+
+        assertEquals(0, buffer.getReconciled());
+        assertEquals(Arrays.asList(reservation, other, otherAmount, otherCurrency), buffer);
+    }
+
+    @Test
+    public void matchesEachBookingOnlyOnce() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        CSASSimpleTransaction first = transaction("ALBERT", -25000, "CZK", NOW);
+        CSASSimpleTransaction second = transaction("ALBERT", -25000, "CZK", NOW + 1000);
+        CSASSimpleTransaction booking = transaction("ALBERT", -25000, "CZK", NOW);
+        buffer.update(Arrays.asList(second, first), Arrays.asList(booking));
+
+        assertEquals(1, buffer.getReconciled());
+        assertEquals(Arrays.asList(first, booking), buffer);
+    }
+
+    @Test
+    public void matchesUnsignedReservation() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        CSASSimpleTransaction reservation = transaction("ALBERT", 25000, "CZK", NOW);
+        CSASSimpleTransaction booking = transaction("ALBERT", -25000, "CZK", NOW);
+        buffer.update(Arrays.asList(reservation), Arrays.asList(booking));
+
+        assertEquals(1, buffer.getReconciled());
+        assertEquals(Arrays.asList(booking), buffer);
+    }
+
+    @Test
+    public void toleratesReservationWithoutCurrency() {
+        CSASTransactionBuffer buffer = new CSASTransactionBuffer(5);
+        CSASSimpleTransaction reservation = transaction("ALBERT", -25000, null, NOW);
+        CSASSimpleTransaction booking = transaction("ALBERT", -25000, "CZK", NOW);
+        buffer.update(Arrays.asList(reservation), Arrays.asList(booking));
+
+        assertEquals(0, buffer.getReconciled());
+        assertEquals(Arrays.asList(reservation, booking), buffer);
+    }
+
+    private static List<CSASSimpleTransaction> bookings(String... names) {
+        List<CSASSimpleTransaction> list = new ArrayList<>();
+        for (String name : names) {
+            list.add(booking(name));
+        }
+        return list;
+    }
+
+    private static CSASSimpleTransaction booking(String name) {
+        return transaction(name, -100 * name.charAt(0), "CZK", NOW - 30 * DAY + name.charAt(0) * DAY);
+    }
+
+    private static CSASSimpleTransaction transaction(String party, long minorUnits, String currency, long date) {
+        CSASSimpleTransaction transaction = new CSASSimpleTransaction();
+        transaction.setAccountPartyInfo(party);
+        transaction.setAmount(new CSASMoney(minorUnits, 2, currency));
+        transaction.setDate(new Date(date));
+        return transaction;
+    }
+}
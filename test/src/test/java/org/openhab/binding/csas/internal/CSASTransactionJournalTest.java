@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2010-2015, openHAB.org and others.
+ * <p>
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.csas.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the appending and the recovery of the {@link CSASTransactionJournal}.
+ *
+ * @author Ondrej Pecta
+ * @since 1.9.0
+ */
+public class CSASTransactionJournalTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+    private static final long NOW = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsTransactionsAfterReopening() throws Exception {
+        List<CSASSimpleTransaction> fetched = Arrays.asList(transaction("C", 2), transaction("B", 1), transaction("A", 0));
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc/1")) {
+            assertNull(journal.getLastDate());
+            assertEquals(3, journal.append(fetched));
+        }
+
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc/1")) {
+            assertEquals(3, journal.size());
+            assertEquals(new Date(NOW + 2 * DAY), journal.getLastDate());
+            assertEquals(fetched, new ArrayList<>(journal.getTransactions()));
+        }
+    }
+
+    @Test
+    public void appendsOnlyNewTransactions() throws Exception {
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            journal.append(Arrays.asList(transaction("B", 1), transaction("A", 0)));
+
+            assertEquals(1, journal.append(Arrays.asList(transaction("C", 1), transaction("B", 1), transaction("A", 0))));
+            assertEquals(Arrays.asList(transaction("C", 1), transaction("B", 1), transaction("A", 0)),
+                    new ArrayList<>(journal.getTransactions()));
+        }
+    }
+
+    @Test
+    public void skipsTransactionsBeforeLastDay() throws Exception {
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            journal.append(Arrays.asList(transaction("B", 2)));
+
+            assertEquals(0, journal.append(Arrays.asList(transaction("B", 2), transaction("A", 0))));
+            assertEquals(1, journal.size());
+        }
+    }
+
+    @Test
+    public void viewIsNotAffectedByAppends() throws Exception {
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            journal.append(Arrays.asList(transaction("A", 0)));
+            List<CSASSimpleTransaction> view = journal.getTransactions();
+
+            journal.append(Arrays.asList(transaction("B", 1)));
+            assertEquals(Arrays.asList(transaction("A", 0)), new ArrayList<>(view));
+        }
+    }
+
+    @Test
+    public void dropsIncompleteRecord() throws Exception {
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            journal.append(Arrays.asList(transaction("B", 1), transaction("A", 0)));
+        }
+        try (RandomAccessFile data = new RandomAccessFile(new File(folder.getRoot(), "acc.dat"), "rw")) {
+            data.setLength(data.length() - 1);
+        }
+
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            assertEquals(1, journal.size());
+            assertEquals(Arrays.asList(transaction("A", 0)), new ArrayList<>(journal.getTransactions()));
+
+            assertEquals(1, journal.append(Arrays.asList(transaction("B", 1), transaction("A", 0))));
+            assertEquals(Arrays.asList(transaction("B", 1), transaction("A", 0)), new ArrayList<>(journal.getTransactions()));
+        }
+    }
+
+    @Test
+    public void dropsIndexEntryWithoutRecord() throws Exception {
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            journal.append(Arrays.asList(transaction("A", 0)));
+        }
+        try (RandomAccessFile index = new RandomAccessFile(new File(folder.getRoot(), "acc.idx"), "rw")) {
+            index.seek(index.length());
+            index.writeLong(1 << 20);
+            index.writeLong(NOW + DAY);
+        }
+
+        try (CSASTransactionJournal journal = new CSASTransactionJournal(folder.getRoot(), "acc")) {
+            assertEquals(1, journal.size());
+            assertEquals(new Date(NOW), journal.getLastDate());
+        }
+    }
+
+    private static CSASSimpleTransaction transaction(String party, int day) {
+        CSASSimpleTransaction transaction = new CSASSimpleTransaction();
+        transaction.setAccountPartyInfo(party);
+        transaction.setDescription("Payment " + party);
+        transaction.setAmount(new CSASMoney(-100 * party.charAt(0), 2, "CZK"));
+        transaction.setDate(new Date(NOW + day * DAY));
+        return transaction;
+    }
+}